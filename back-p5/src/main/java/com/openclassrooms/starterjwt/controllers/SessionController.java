@@ -2,14 +2,32 @@ package com.openclassrooms.starterjwt.controllers;
 
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionImportReportDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.exception.UnknownReferenceException;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.payload.response.MessageResponse;
+import com.openclassrooms.starterjwt.services.SessionEventBroadcaster;
+import com.openclassrooms.starterjwt.services.SessionImportService;
 import com.openclassrooms.starterjwt.services.SessionService;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -19,34 +37,104 @@ import java.util.List;
 public class SessionController {
     private final SessionMapper sessionMapper;
     private final SessionService sessionService;
+    private final SessionEventBroadcaster sessionEventBroadcaster;
+    private final SessionImportService sessionImportService;
 
+    // Without paging parameters, answer with the whole list as the front-end still expects
+    @Value("${oc.app.sessionListUnpaged}")
+    private boolean listUnpaged;
 
     public SessionController(SessionService sessionService,
-                             SessionMapper sessionMapper) {
+                             SessionMapper sessionMapper,
+                             SessionEventBroadcaster sessionEventBroadcaster,
+                             SessionImportService sessionImportService) {
         this.sessionMapper = sessionMapper;
         this.sessionService = sessionService;
+        this.sessionEventBroadcaster = sessionEventBroadcaster;
+        this.sessionImportService = sessionImportService;
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
+    public ResponseEntity<?> findById(@PathVariable("id") String id, WebRequest request) {
         try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
+            // Cheap version check first, the session is only read when the client copy is outdated
+            String etag = this.sessionService.getETag(Long.valueOf(id));
+            if (etag == null) {
+                return ResponseEntity.notFound().build();
+            }
+            if (request.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
+            SessionDto session = this.sessionService.findDtoById(Long.valueOf(id));
 
             if (session == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            return ResponseEntity.ok().eTag(etag).body(session);
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public ResponseEntity<?> findAll(@RequestParam(value = "size", required = false) Integer size,
+                                     @RequestParam(value = "cursor", required = false) String cursor,
+                                     @RequestParam(value = "from", required = false) String from,
+                                     @RequestParam(value = "to", required = false) String to,
+                                     WebRequest request) {
+        if (from != null || to != null) {
+            if (from == null || to == null) {
+                return ResponseEntity.badRequest().build();
+            }
+            String etag = this.sessionService.getListETag("range", from, to);
+            if (request.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(this.sessionService.findDtosBetween(from, to));
+        }
+
+        String etag = this.sessionService.getListETag(size, cursor);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        if (listUnpaged && size == null && cursor == null) {
+            return ResponseEntity.ok().eTag(etag).body(this.sessionService.findAllDtos());
+        }
+
+        Slice<SessionDto> page = this.sessionService.findDtoPage(cursor, size);
+        List<SessionDto> sessions = page.getContent();
+        String nextCursor = page.hasNext() ? this.sessionService.encodeCursor(sessions.get(sessions.size() - 1)) : null;
+
+        return ResponseEntity.ok().eTag(etag).body(new SessionPageDto(sessions, nextCursor));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        return this.sessionEventBroadcaster.subscribe();
+    }
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+    @GetMapping("/calendar")
+    public ResponseEntity<?> findCalendar(@RequestParam(value = "view", defaultValue = "week") String view,
+                                          @RequestParam(value = "date", required = false) String date,
+                                          WebRequest request) {
+        String etag = this.sessionService.getListETag("calendar", view, date == null ? LocalDate.now() : date);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(this.sessionService.findCalendar(view, date));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam("q") String query) {
+        return ResponseEntity.ok().body(this.sessionService.search(query));
+    }
+
+    @GetMapping("/changes")
+    public ResponseEntity<?> findChanges(@RequestParam("since") String since) {
+        return ResponseEntity.ok().body(this.sessionService.findChanges(since));
     }
 
     @PostMapping()
@@ -59,6 +147,23 @@ public class SessionController {
         return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
     }
 
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> bulkCreate(@RequestBody List<SessionDto> sessionDtos) {
+        return toImportResponse(this.sessionImportService.importSessions(sessionDtos));
+    }
+
+    @PostMapping(value = "/bulk", consumes = "application/x-ndjson")
+    public ResponseEntity<?> bulkCreateNdjson(HttpServletRequest request) throws IOException {
+        return toImportResponse(this.sessionImportService.importNdjson(request.getInputStream()));
+    }
+
+    private static ResponseEntity<?> toImportResponse(SessionImportReportDto report) {
+        if (!report.getErrors().isEmpty()) {
+            return ResponseEntity.badRequest().body(report);
+        }
+        return ResponseEntity.ok().body(report);
+    }
+
     @PutMapping("{id}")
     public ResponseEntity<?> update(@PathVariable("id") String id, @Valid @RequestBody SessionDto sessionDto) {
         try {
@@ -107,4 +212,25 @@ public class SessionController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<?> handleServiceUnavailable(ServiceUnavailableException e) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new MessageResponse("Error: Service temporarily unavailable, please retry later"));
+    }
+
+    @ExceptionHandler(UnknownReferenceException.class)
+    public ResponseEntity<?> handleUnknownReference(UnknownReferenceException e) {
+        return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+    }
+
+    // A booking changed the session between reading its version and saving the edit
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<?> handleConcurrentUpdate(OptimisticLockingFailureException e) {
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(new MessageResponse("Error: Session was modified concurrently, please retry"));
+    }
 }
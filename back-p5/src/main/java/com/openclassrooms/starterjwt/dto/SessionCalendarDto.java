@@ -0,0 +1,22 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionCalendarDto {
+    private LocalDate from;
+
+    // Exclusive
+    private LocalDate to;
+
+    // Every day of the view, in order, with its sessions
+    private Map<LocalDate, List<SessionDto>> days;
+}
@@ -0,0 +1,19 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionChangesDto {
+    private List<SessionDto> updated;
+
+    private List<Long> deleted;
+
+    // Epoch millis to send as "since" on the next sync
+    private long syncedAt;
+}
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -31,9 +32,19 @@ public class SessionDto {
     @Size(max = 2500)
     private String description;
 
+    // Maximum number of participants, unlimited when null
+    @Min(1)
+    private Integer capacity;
+
     private List<Long> users;
 
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
+
+    // Projection constructor, participants are attached afterwards
+    public SessionDto(Long id, String name, Date date, Long teacher_id, String description, Integer capacity,
+                      LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this(id, name, date, teacher_id, description, capacity, null, createdAt, updatedAt);
+    }
 }
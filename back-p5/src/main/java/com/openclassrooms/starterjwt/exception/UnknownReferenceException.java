@@ -0,0 +1,11 @@
+package com.openclassrooms.starterjwt.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value= HttpStatus.BAD_REQUEST)
+public class UnknownReferenceException extends RuntimeException {
+    public UnknownReferenceException(String message) {
+        super(message);
+    }
+}
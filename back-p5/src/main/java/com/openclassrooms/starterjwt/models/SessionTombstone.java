@@ -0,0 +1,28 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Remembers a deleted session for a while so that clients syncing incrementally learn about it.
+ */
+@Entity
+@Table(name = "SESSION_TOMBSTONES", indexes = @Index(name = "idx_session_tombstones_deleted_at", columnList = "deleted_at"))
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(of = {"sessionId"})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class SessionTombstone {
+    @Id
+    @Column(name = "session_id")
+    private Long sessionId;
+
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+}
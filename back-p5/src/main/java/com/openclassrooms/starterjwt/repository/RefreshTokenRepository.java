@@ -0,0 +1,24 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken r where r.userId = ?1")
+    int deleteByUserId(Long userId);
+
+    // Only the caller that actually removes the row may redeem the token
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken r where r.tokenHash = ?1 and r.expiresAt > ?2")
+    int deleteUnexpired(String tokenHash, Date now);
+}
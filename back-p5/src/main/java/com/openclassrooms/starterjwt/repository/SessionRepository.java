@@ -1,9 +1,109 @@
 package com.openclassrooms.starterjwt.repository;
 
+import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface SessionRepository  extends JpaRepository<Session, Long> {
+    String SESSION_DTO = "select new com.openclassrooms.starterjwt.dto.SessionDto("
+            + "s.id, s.name, s.date, t.id, s.description, s.capacity, s.createdAt, s.updatedAt) "
+            + "from Session s left join s.teacher t ";
+
+    @Query(SESSION_DTO)
+    List<SessionDto> findAllDtos();
+
+    @Query(SESSION_DTO + "where s.id = :id")
+    Optional<SessionDto> findDtoById(@Param("id") Long id);
+
+    @Query(SESSION_DTO + "where s.id in (:ids)")
+    List<SessionDto> findDtosByIds(@Param("ids") Collection<Long> ids);
+
+    @Query(SESSION_DTO + "where s.updatedAt > :since order by s.updatedAt asc, s.id asc")
+    List<SessionDto> findDtosUpdatedAfter(@Param("since") LocalDateTime since);
+
+    // Range scan on idx_sessions_date_id
+    @Query(SESSION_DTO + "where s.date >= :from and s.date < :to order by s.date asc, s.id asc")
+    List<SessionDto> findDtosBetween(@Param("from") Date from, @Param("to") Date to);
+
+    @Query(SESSION_DTO + "order by s.date asc, s.id asc")
+    List<SessionDto> findDtoPage(Pageable pageable);
+
+    @Query(SESSION_DTO + "where s.date > :date or (s.date = :date and s.id > :id) order by s.date asc, s.id asc")
+    List<SessionDto> findDtoPageAfter(@Param("date") Date date, @Param("id") Long id, Pageable pageable);
+
+    @Query("select s.version from Session s where s.id = :id")
+    List<Long> findVersionById(@Param("id") Long id);
+
+    // Bookings of one user found through idx_participate_user_session, upcoming ones after (date, id) in date order
+    @Query(value = "select s.id from SESSIONS s join PARTICIPATE p on p.session_id = s.id "
+            + "where p.user_id = :userId and s.date >= :pivot and (s.date > :date or (s.date = :date and s.id > :id)) "
+            + "order by s.date asc, s.id asc limit :limit", nativeQuery = true)
+    List<Number> findUpcomingIdsByUser(@Param("userId") Long userId, @Param("pivot") Date pivot,
+                                       @Param("date") Date date, @Param("id") Long id, @Param("limit") int limit);
+
+    // Past bookings of one user before (date, id), most recent first
+    @Query(value = "select s.id from SESSIONS s join PARTICIPATE p on p.session_id = s.id "
+            + "where p.user_id = :userId and s.date < :pivot and (s.date < :date or (s.date = :date and s.id < :id)) "
+            + "order by s.date desc, s.id desc limit :limit", nativeQuery = true)
+    List<Number> findPastIdsByUser(@Param("userId") Long userId, @Param("pivot") Date pivot,
+                                   @Param("date") Date date, @Param("id") Long id, @Param("limit") int limit);
+
+    // (session_id, user_id) rows read straight from the join table, without loading users
+    @Query(value = "select session_id, user_id from PARTICIPATE where session_id in (:ids)", nativeQuery = true)
+    List<Object[]> findParticipantIds(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "select session_id, user_id from PARTICIPATE", nativeQuery = true)
+    List<Object[]> findAllParticipantIds();
+
+    // Inserts the row only when the session and the user exist and the pair is not there yet. Runs after
+    // takeSeat, which already holds the session row lock: the read of SESSIONS cannot deadlock with it.
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "insert into PARTICIPATE (session_id, user_id) "
+            + "select s.id, u.id from SESSIONS s, USERS u where s.id = :sessionId and u.id = :userId "
+            + "and not exists (select 1 from PARTICIPATE p where p.session_id = :sessionId and p.user_id = :userId)",
+            nativeQuery = true)
+    int addParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "delete from PARTICIPATE where session_id = :sessionId and user_id = :userId", nativeQuery = true)
+    int removeParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    // Takes a seat only if one is left: the row lock serializes bookings on the same session only
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "update SESSIONS set seats_taken = seats_taken + 1, version = version + 1, updated_at = current_timestamp "
+            + "where id = :sessionId and (capacity is null or seats_taken < capacity)", nativeQuery = true)
+    int takeSeat(@Param("sessionId") Long sessionId);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "update SESSIONS set seats_taken = case when seats_taken > 0 then seats_taken - 1 else 0 end, "
+            + "version = version + 1, updated_at = current_timestamp where id = :sessionId",
+            nativeQuery = true)
+    int releaseSeat(@Param("sessionId") Long sessionId);
+
+    // Runs after a save that already incremented the version, the managed entity keeps it
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query(value = "update SESSIONS set seats_taken = (select count(*) from PARTICIPATE p where p.session_id = :sessionId), "
+            + "updated_at = current_timestamp where id = :sessionId", nativeQuery = true)
+    int syncSeatsTaken(@Param("sessionId") Long sessionId);
+
+    @Query(value = "select count(*) from SESSIONS where id = :sessionId and seats_taken > capacity", nativeQuery = true)
+    int countOverbooked(@Param("sessionId") Long sessionId);
 }
@@ -0,0 +1,23 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.SessionTombstone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SessionTombstoneRepository extends JpaRepository<SessionTombstone, Long> {
+    @Query("select t.sessionId from SessionTombstone t where t.deletedAt > :since order by t.deletedAt asc")
+    List<Long> findSessionIdsDeletedAfter(@Param("since") LocalDateTime since);
+
+    @Transactional
+    @Modifying
+    @Query("delete from SessionTombstone t where t.deletedAt < :before")
+    int deleteOlderThan(@Param("before") LocalDateTime before);
+}
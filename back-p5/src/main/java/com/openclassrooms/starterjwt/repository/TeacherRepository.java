@@ -1,9 +1,23 @@
 package com.openclassrooms.starterjwt.repository;
 
+import com.openclassrooms.starterjwt.dto.TeacherDto;
 import com.openclassrooms.starterjwt.models.Teacher;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface TeacherRepository  extends JpaRepository<Teacher, Long> {
+    String TEACHER_DTO = "select new com.openclassrooms.starterjwt.dto.TeacherDto("
+            + "t.id, t.lastName, t.firstName, t.createdAt, t.updatedAt) from Teacher t ";
+
+    @Query(TEACHER_DTO)
+    List<TeacherDto> findAllDtos();
+
+    @Query(TEACHER_DTO + "where t.id = :id")
+    Optional<TeacherDto> findDtoById(@Param("id") Long id);
 }
@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -10,12 +11,14 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import com.openclassrooms.starterjwt.security.jwt.AuthEntryPointJwt;
 import com.openclassrooms.starterjwt.security.jwt.AuthTokenFilter;
+import com.openclassrooms.starterjwt.security.ratelimit.AuthRateLimitFilter;
+import com.openclassrooms.starterjwt.security.ratelimit.TokenBucketRateLimiter;
+import com.openclassrooms.starterjwt.security.services.BoundedBCryptPasswordEncoder;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
 @Configuration
@@ -25,17 +28,68 @@ import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
     // jsr250Enabled = true,
     prePostEnabled = true)
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
+  private static final int RATE_LIMIT_STRIPES = 64;
+
   @Autowired
   UserDetailsServiceImpl userDetailsService;
 
   @Autowired
   private AuthEntryPointJwt unauthorizedHandler;
 
+  @Value("${oc.app.authRateLimitIpCapacity}")
+  private int ipCapacity;
+
+  @Value("${oc.app.authRateLimitIpRefillPerMinute}")
+  private int ipRefillPerMinute;
+
+  @Value("${oc.app.authRateLimitEmailCapacity}")
+  private int emailCapacity;
+
+  @Value("${oc.app.authRateLimitEmailRefillPerMinute}")
+  private int emailRefillPerMinute;
+
+  @Value("${oc.app.authRateLimitMaxKeys}")
+  private int rateLimitMaxKeys;
+
+  @Value("${oc.app.authRateLimitIdleMs}")
+  private long rateLimitIdleMs;
+
+  @Value("${oc.app.bcryptStrength}")
+  private int bcryptStrength;
+
+  @Value("${oc.app.bcryptTargetMs}")
+  private long bcryptTargetMs;
+
+  @Value("${oc.app.bcryptMinStrength}")
+  private int bcryptMinStrength;
+
+  @Value("${oc.app.bcryptMaxStrength}")
+  private int bcryptMaxStrength;
+
+  @Value("${oc.app.bcryptThreads}")
+  private int bcryptThreads;
+
+  @Value("${oc.app.bcryptQueueCapacity}")
+  private int bcryptQueueCapacity;
+
+  @Value("${oc.app.bcryptTimeoutMs}")
+  private long bcryptTimeoutMs;
+
+  @Value("${oc.app.bcryptRetryAfterSeconds}")
+  private long bcryptRetryAfterSeconds;
+
   @Bean
   public AuthTokenFilter authenticationJwtTokenFilter() {
     return new AuthTokenFilter();
   }
 
+  @Bean
+  public AuthRateLimitFilter authRateLimitFilter() {
+    return new AuthRateLimitFilter(
+        new TokenBucketRateLimiter(ipCapacity, ipRefillPerMinute, RATE_LIMIT_STRIPES, rateLimitMaxKeys, rateLimitIdleMs),
+        new TokenBucketRateLimiter(emailCapacity, emailRefillPerMinute, RATE_LIMIT_STRIPES, rateLimitMaxKeys, rateLimitIdleMs));
+  }
+
   @Override
   public void configure(AuthenticationManagerBuilder authenticationManagerBuilder) throws Exception {
     authenticationManagerBuilder.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder());
@@ -49,7 +103,11 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
   @Bean
   public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+    int strength = bcryptStrength > 0
+        ? bcryptStrength
+        : BoundedBCryptPasswordEncoder.calibrateStrength(bcryptTargetMs, bcryptMinStrength, bcryptMaxStrength);
+
+    return new BoundedBCryptPasswordEncoder(strength, bcryptThreads, bcryptQueueCapacity, bcryptTimeoutMs, bcryptRetryAfterSeconds);
   }
 
   @Override
@@ -62,5 +120,6 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
       .anyRequest().authenticated();
 
     http.addFilterBefore(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
+    http.addFilterBefore(authRateLimitFilter(), AuthTokenFilter.class);
   }
 }
@@ -1,43 +1,68 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 
 @Component
 public class AuthEntryPointJwt implements AuthenticationEntryPoint {
+  private static final int MAX_CACHED_MESSAGES = 64;
 
-  private static final Logger logger = LoggerFactory.getLogger(AuthEntryPointJwt.class);
+  private static final byte[] BODY_SUFFIX = "\"}".getBytes(StandardCharsets.UTF_8);
+
+  // Serialized body up to the path, per exception message: there are only a handful of them
+  private final Map<String, byte[]> bodyPrefixes = new ConcurrentHashMap<>();
+
+  private final TokenFailureLog tokenFailureLog;
+
+  public AuthEntryPointJwt(TokenFailureLog tokenFailureLog) {
+    this.tokenFailureLog = tokenFailureLog;
+  }
 
   @Override
   public void commence(HttpServletRequest request, HttpServletResponse response, AuthenticationException authException)
       throws IOException, ServletException {
-    logger.error("Unauthorized error: {}", authException.getMessage());
+    tokenFailureLog.record(TokenFailureLog.Reason.UNAUTHORIZED);
+
+    byte[] prefix = getBodyPrefix(authException.getMessage());
+    byte[] path = JsonStringEncoder.getInstance().quoteAsUTF8(String.valueOf(request.getServletPath()));
 
     response.setContentType(MediaType.APPLICATION_JSON_VALUE);
     response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+    response.setContentLength(prefix.length + path.length + BODY_SUFFIX.length);
 
-    final Map<String, Object> body = new HashMap<>();
-    body.put("status", HttpServletResponse.SC_UNAUTHORIZED);
-    body.put("error", "Unauthorized");
-    body.put("message", authException.getMessage());
-    body.put("path", request.getServletPath());
+    ServletOutputStream out = response.getOutputStream();
+    out.write(prefix);
+    out.write(path);
+    out.write(BODY_SUFFIX);
+  }
 
-    final ObjectMapper mapper = new ObjectMapper();
-    mapper.writeValue(response.getOutputStream(), body);
+  private byte[] getBodyPrefix(String message) {
+    String key = String.valueOf(message);
+    byte[] prefix = bodyPrefixes.get(key);
+    if (prefix == null) {
+      prefix = ("{\"status\":" + HttpServletResponse.SC_UNAUTHORIZED
+          + ",\"error\":\"Unauthorized\""
+          + ",\"message\":" + (message == null ? "null" : "\"" + new String(JsonStringEncoder.getInstance().quoteAsString(message)) + "\"")
+          + ",\"path\":\"").getBytes(StandardCharsets.UTF_8);
+      if (bodyPrefixes.size() < MAX_CACHED_MESSAGES) {
+        bodyPrefixes.put(key, prefix);
+      }
+    }
+    return prefix;
   }
 
 }
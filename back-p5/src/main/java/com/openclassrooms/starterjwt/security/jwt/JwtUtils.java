@@ -1,20 +1,38 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
+import com.openclassrooms.starterjwt.security.jwt.TokenFailureLog.Reason;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 import io.jsonwebtoken.*;
 
 @Component
 public class JwtUtils {
-  private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
+  static final String CLAIM_ID = "id";
+  static final String CLAIM_FIRST_NAME = "firstName";
+  static final String CLAIM_LAST_NAME = "lastName";
+  static final String CLAIM_ADMIN = "admin";
+
+  private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  });
 
   @Value("${oc.app.jwtSecret}")
   private String jwtSecret;
@@ -22,38 +40,132 @@ public class JwtUtils {
   @Value("${oc.app.jwtExpirationMs}")
   private int jwtExpirationMs;
 
-  public String generateJwtToken(Authentication authentication) {
+  @Value("${oc.app.jwtCacheSize}")
+  private int jwtCacheSize;
+
+  // Verified claims keyed by a digest of the token, so raw bearer tokens are never kept in memory
+  private final Map<String, Claims> verifiedClaims = new ConcurrentHashMap<>();
+
+  private final TokenFailureLog tokenFailureLog;
+
+  public JwtUtils(TokenFailureLog tokenFailureLog) {
+    this.tokenFailureLog = tokenFailureLog;
+  }
 
-    UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+  public String generateJwtToken(Authentication authentication) {
+    return generateJwtToken((UserDetailsImpl) authentication.getPrincipal());
+  }
 
+  public String generateJwtToken(UserDetailsImpl userPrincipal) {
     return Jwts.builder()
+        .setId(UUID.randomUUID().toString())
         .setSubject((userPrincipal.getUsername()))
+        .claim(CLAIM_ID, userPrincipal.getId())
+        .claim(CLAIM_FIRST_NAME, userPrincipal.getFirstName())
+        .claim(CLAIM_LAST_NAME, userPrincipal.getLastName())
+        .claim(CLAIM_ADMIN, Boolean.TRUE.equals(userPrincipal.getAdmin()))
         .setIssuedAt(new Date())
         .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
         .signWith(SignatureAlgorithm.HS512, jwtSecret)
         .compact();
   }
 
+  /**
+   * Verifies the token signature and expiry once and returns its claims, or null when the token is
+   * not valid. Tokens already verified are served from a bounded cache until they expire.
+   */
+  public Claims getVerifiedClaims(String token) {
+    if (token == null || token.isEmpty()) {
+      tokenFailureLog.record(Reason.EMPTY);
+      return null;
+    }
+
+    String key = digest(token);
+    Claims cached = verifiedClaims.get(key);
+    if (cached != null) {
+      if (!isExpired(cached, System.currentTimeMillis())) {
+        return cached;
+      }
+      verifiedClaims.remove(key);
+    }
+
+    Claims claims = parseClaims(token);
+    if (claims != null && jwtCacheSize > 0) {
+      if (verifiedClaims.size() >= jwtCacheSize) {
+        evictEntries();
+      }
+      verifiedClaims.put(key, claims);
+    }
+    return claims;
+  }
+
+  /**
+   * Rebuilds the principal from the identity claims embedded at login, or returns null for tokens
+   * issued before those claims existed.
+   */
+  public UserDetailsImpl getUserDetailsFromClaims(Claims claims) {
+    Object id = claims.get(CLAIM_ID);
+    if (!(id instanceof Number)) {
+      return null;
+    }
+
+    return UserDetailsImpl
+            .builder()
+            .id(((Number) id).longValue())
+            .username(claims.getSubject())
+            .firstName(claims.get(CLAIM_FIRST_NAME, String.class))
+            .lastName(claims.get(CLAIM_LAST_NAME, String.class))
+            .admin(Boolean.TRUE.equals(claims.get(CLAIM_ADMIN, Boolean.class)))
+            .build();
+  }
+
   public String getUserNameFromJwtToken(String token) {
-    return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+    Claims claims = getVerifiedClaims(token);
+    return claims != null ? claims.getSubject() : null;
   }
 
   public boolean validateJwtToken(String authToken) {
+    return getVerifiedClaims(authToken) != null;
+  }
+
+  private Claims parseClaims(String token) {
     try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
+      return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody();
     } catch (SignatureException e) {
-      logger.error("Invalid JWT signature: {}", e.getMessage());
+      tokenFailureLog.record(Reason.INVALID_SIGNATURE);
     } catch (MalformedJwtException e) {
-      logger.error("Invalid JWT token: {}", e.getMessage());
+      tokenFailureLog.record(Reason.MALFORMED);
     } catch (ExpiredJwtException e) {
-      logger.error("JWT token is expired: {}", e.getMessage());
+      tokenFailureLog.record(Reason.EXPIRED);
     } catch (UnsupportedJwtException e) {
-      logger.error("JWT token is unsupported: {}", e.getMessage());
+      tokenFailureLog.record(Reason.UNSUPPORTED);
     } catch (IllegalArgumentException e) {
-      logger.error("JWT claims string is empty: {}", e.getMessage());
+      tokenFailureLog.record(Reason.EMPTY);
     }
 
-    return false;
+    return null;
+  }
+
+  private void evictEntries() {
+    long now = System.currentTimeMillis();
+    verifiedClaims.values().removeIf(claims -> isExpired(claims, now));
+
+    // Still full of live tokens: drop arbitrary entries, they will simply be verified again
+    Iterator<String> keys = verifiedClaims.keySet().iterator();
+    while (verifiedClaims.size() >= jwtCacheSize && keys.hasNext()) {
+      keys.next();
+      keys.remove();
+    }
+  }
+
+  private static boolean isExpired(Claims claims, long now) {
+    Date expiration = claims.getExpiration();
+    return expiration != null && expiration.getTime() <= now;
+  }
+
+  static String digest(String token) {
+    MessageDigest digest = SHA_256.get();
+    digest.reset();
+    return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
   }
 }
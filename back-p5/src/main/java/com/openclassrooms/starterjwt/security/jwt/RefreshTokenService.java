@@ -0,0 +1,143 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.openclassrooms.starterjwt.models.RefreshToken;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+/**
+ * Opaque, single-use refresh tokens. Renewing an access token costs a map lookup instead of a
+ * password verification; every refresh rotates the token so a stolen one can only be used once.
+ */
+@Service
+public class RefreshTokenService {
+  private final SecureRandom secureRandom = new SecureRandom();
+
+  private final Map<String, Entry> tokens = new ConcurrentHashMap<>();
+
+  private final RefreshTokenRepository refreshTokenRepository;
+
+  private final UserRepository userRepository;
+
+  @Value("${oc.app.jwtRefreshExpirationMs}")
+  private long refreshExpirationMs;
+
+  @Value("${oc.app.refreshTokenPersistent}")
+  private boolean persistent;
+
+  @Value("${oc.app.refreshTokenMaxEntries}")
+  private int maxEntries;
+
+  RefreshTokenService(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository) {
+    this.refreshTokenRepository = refreshTokenRepository;
+    this.userRepository = userRepository;
+  }
+
+  public String issue(UserDetailsImpl userDetails) {
+    byte[] bytes = new byte[32];
+    secureRandom.nextBytes(bytes);
+    String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    long expiresAt = System.currentTimeMillis() + refreshExpirationMs;
+
+    if (tokens.size() >= maxEntries) {
+      evictEntries();
+    }
+    String key = JwtUtils.digest(token);
+    tokens.put(key, new Entry(withoutPassword(userDetails), expiresAt));
+
+    if (persistent) {
+      refreshTokenRepository.save(new RefreshToken(key, userDetails.getId(), new Date(expiresAt)));
+    }
+    return token;
+  }
+
+  /**
+   * Consumes a refresh token and returns the user it was issued to, or null when the token is
+   * unknown, already used or expired.
+   */
+  public UserDetailsImpl consume(String token) {
+    String key = JwtUtils.digest(token);
+    long now = System.currentTimeMillis();
+
+    Entry entry = tokens.remove(key);
+    if (persistent) {
+      RefreshToken stored = refreshTokenRepository.findById(key).orElse(null);
+      // Concurrent callers may all find the row, only one of them deletes it
+      if (stored == null || refreshTokenRepository.deleteUnexpired(key, new Date(now)) != 1) {
+        return null;
+      }
+      if (entry == null) {
+        // Issued before a restart: rebuild the principal from the user row
+        User user = userRepository.findById(stored.getUserId()).orElse(null);
+        return user != null ? toUserDetails(user) : null;
+      }
+    }
+
+    if (entry == null || entry.expiresAt <= now) {
+      return null;
+    }
+    return entry.userDetails;
+  }
+
+  public void revokeAll(Long userId) {
+    tokens.values().removeIf(entry -> userId.equals(entry.userDetails.getId()));
+    if (persistent) {
+      refreshTokenRepository.deleteByUserId(userId);
+    }
+  }
+
+  private void evictEntries() {
+    long now = System.currentTimeMillis();
+    tokens.values().removeIf(entry -> entry.expiresAt <= now);
+
+    // Still full: drop arbitrary tokens, their owners will have to log in again
+    Iterator<String> keys = tokens.keySet().iterator();
+    while (tokens.size() >= maxEntries && keys.hasNext()) {
+      keys.next();
+      keys.remove();
+    }
+  }
+
+  private static UserDetailsImpl withoutPassword(UserDetailsImpl userDetails) {
+    return UserDetailsImpl
+            .builder()
+            .id(userDetails.getId())
+            .username(userDetails.getUsername())
+            .firstName(userDetails.getFirstName())
+            .lastName(userDetails.getLastName())
+            .admin(userDetails.getAdmin())
+            .build();
+  }
+
+  private static UserDetailsImpl toUserDetails(User user) {
+    return UserDetailsImpl
+            .builder()
+            .id(user.getId())
+            .username(user.getEmail())
+            .firstName(user.getFirstName())
+            .lastName(user.getLastName())
+            .admin(user.isAdmin())
+            .build();
+  }
+
+  private static final class Entry {
+    private final UserDetailsImpl userDetails;
+    private final long expiresAt;
+
+    private Entry(UserDetailsImpl userDetails, long expiresAt) {
+      this.userDetails = userDetails;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
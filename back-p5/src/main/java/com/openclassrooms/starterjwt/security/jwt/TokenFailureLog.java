@@ -0,0 +1,84 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts authentication failures and logs them as one aggregated line per interval, so that a
+ * client flooding us with bad tokens does not turn every rejected request into a log write.
+ */
+@Component
+public class TokenFailureLog {
+  private static final Logger logger = LoggerFactory.getLogger(TokenFailureLog.class);
+
+  public enum Reason {
+    INVALID_SIGNATURE,
+    MALFORMED,
+    EXPIRED,
+    REVOKED,
+    UNSUPPORTED,
+    EMPTY,
+    AUTHENTICATION_ERROR,
+    UNAUTHORIZED
+  }
+
+  private final Map<Reason, LongAdder> totals = new EnumMap<>(Reason.class);
+
+  private final Map<Reason, LongAdder> sinceLastLog = new EnumMap<>(Reason.class);
+
+  private final AtomicLong nextLogAt = new AtomicLong();
+
+  @Value("${oc.app.authFailureLogIntervalMs}")
+  private long logIntervalMs;
+
+  public TokenFailureLog() {
+    for (Reason reason : Reason.values()) {
+      totals.put(reason, new LongAdder());
+      sinceLastLog.put(reason, new LongAdder());
+    }
+  }
+
+  public void record(Reason reason) {
+    totals.get(reason).increment();
+    sinceLastLog.get(reason).increment();
+
+    long now = System.currentTimeMillis();
+    long logAt = nextLogAt.get();
+    if (now >= logAt && nextLogAt.compareAndSet(logAt, now + logIntervalMs)) {
+      flush();
+    }
+  }
+
+  public void record(Reason reason, Exception e) {
+    record(reason);
+    if (logger.isDebugEnabled()) {
+      logger.debug("Authentication failure ({})", reason, e);
+    }
+  }
+
+  public long getCount(Reason reason) {
+    return totals.get(reason).sum();
+  }
+
+  private void flush() {
+    StringBuilder summary = new StringBuilder();
+    long total = 0;
+    for (Map.Entry<Reason, LongAdder> entry : sinceLastLog.entrySet()) {
+      long count = entry.getValue().sumThenReset();
+      if (count > 0) {
+        summary.append(summary.length() == 0 ? "" : ", ").append(entry.getKey()).append('=').append(count);
+        total += count;
+      }
+    }
+    if (total > 0) {
+      logger.warn("{} authentication failures in the last {} ms: {}", total, logIntervalMs, summary);
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Revoked token ids, checked on every authenticated request. A fixed-size Bloom filter answers the
+ * common "not revoked" case without touching the exact set; the exact set only confirms positives.
+ * Entries expire together with their token and the filter is rebuilt from the survivors.
+ */
+@Component
+public class TokenRevocationStore {
+  private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+  private final int expectedTokens;
+
+  private final double falsePositiveRate;
+
+  private final long purgeIntervalMs;
+
+  private volatile BloomFilter bloomFilter;
+
+  private volatile long nextPurgeAt;
+
+  public TokenRevocationStore(@Value("${oc.app.revocationExpectedTokens}") int expectedTokens,
+                              @Value("${oc.app.revocationFalsePositiveRate}") double falsePositiveRate,
+                              @Value("${oc.app.revocationPurgeIntervalMs}") long purgeIntervalMs) {
+    this.expectedTokens = expectedTokens;
+    this.falsePositiveRate = falsePositiveRate;
+    this.purgeIntervalMs = purgeIntervalMs;
+    this.bloomFilter = new BloomFilter(expectedTokens, falsePositiveRate);
+    this.nextPurgeAt = System.currentTimeMillis() + purgeIntervalMs;
+  }
+
+  public synchronized void revoke(String tokenId, long expiresAt) {
+    if (tokenId == null || expiresAt <= System.currentTimeMillis()) {
+      return;
+    }
+    revoked.put(tokenId, expiresAt);
+    bloomFilter.add(tokenId);
+  }
+
+  public boolean isRevoked(String tokenId) {
+    if (tokenId == null) {
+      return false;
+    }
+
+    long now = System.currentTimeMillis();
+    if (now >= nextPurgeAt) {
+      purge(now);
+    }
+
+    if (!bloomFilter.mightContain(tokenId)) {
+      return false;
+    }
+    Long expiresAt = revoked.get(tokenId);
+    return expiresAt != null && expiresAt > now;
+  }
+
+  public int size() {
+    return revoked.size();
+  }
+
+  private synchronized void purge(long now) {
+    if (now < nextPurgeAt) {
+      return;
+    }
+    revoked.values().removeIf(expiresAt -> expiresAt <= now);
+
+    BloomFilter rebuilt = new BloomFilter(expectedTokens, falsePositiveRate);
+    revoked.keySet().forEach(rebuilt::add);
+    bloomFilter = rebuilt;
+    nextPurgeAt = now + purgeIntervalMs;
+  }
+
+  private static final class BloomFilter {
+    private final AtomicLongArray bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    private BloomFilter(int expectedInsertions, double falsePositiveRate) {
+      long size = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+      this.bits = new AtomicLongArray((int) ((Math.max(64, size) + 63) / 64));
+      this.bitCount = bits.length() * 64L;
+      this.hashCount = Math.max(1, (int) Math.round(size / (double) expectedInsertions * Math.log(2)));
+    }
+
+    private void add(String value) {
+      long hash1 = hash(value);
+      long hash2 = mix(hash1) | 1;
+      for (int i = 0; i < hashCount; i++) {
+        long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+        int index = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long word;
+        do {
+          word = bits.get(index);
+        } while ((word & mask) == 0 && !bits.compareAndSet(index, word, word | mask));
+      }
+    }
+
+    private boolean mightContain(String value) {
+      long hash1 = hash(value);
+      long hash2 = mix(hash1) | 1;
+      for (int i = 0; i < hashCount; i++) {
+        long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+        if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    // 64-bit FNV-1a over the UTF-16 chars
+    private static long hash(String value) {
+      long hash = 0xcbf29ce484222325L;
+      for (int i = 0; i < value.length(); i++) {
+        hash ^= value.charAt(i);
+        hash *= 0x100000001b3L;
+      }
+      return mix(hash);
+    }
+
+    private static long mix(long value) {
+      value ^= value >>> 33;
+      value *= 0xff51afd7ed558ccdL;
+      value ^= value >>> 33;
+      value *= 0xc4ceb9fe1a85ec53L;
+      value ^= value >>> 33;
+      return value;
+    }
+  }
+}
@@ -0,0 +1,200 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Throttles the unauthenticated /api/auth endpoints per client IP and per submitted email, so that
+ * credential stuffing is rejected before it reaches the bcrypt pool.
+ */
+public class AuthRateLimitFilter extends OncePerRequestFilter {
+  private static final String AUTH_PATH = "/api/auth/";
+
+  private static final int MAX_BODY_BYTES = 16 * 1024;
+
+  private static final byte[] TOO_MANY_REQUESTS_BODY =
+      "{\"message\":\"Error: Too many requests, please retry later\"}".getBytes(StandardCharsets.UTF_8);
+
+  private static final byte[] PAYLOAD_TOO_LARGE_BODY =
+      "{\"message\":\"Error: Request body too large\"}".getBytes(StandardCharsets.UTF_8);
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final TokenBucketRateLimiter ipLimiter;
+
+  private final TokenBucketRateLimiter emailLimiter;
+
+  private final LongAdder rejectedByIp = new LongAdder();
+  private final LongAdder rejectedByEmail = new LongAdder();
+  private final LongAdder rejectedTooLarge = new LongAdder();
+
+  public AuthRateLimitFilter(TokenBucketRateLimiter ipLimiter, TokenBucketRateLimiter emailLimiter) {
+    this.ipLimiter = ipLimiter;
+    this.emailLimiter = emailLimiter;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !request.getRequestURI().startsWith(request.getContextPath() + AUTH_PATH);
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    long waitMs = ipLimiter.tryAcquire(request.getRemoteAddr());
+    if (waitMs > 0) {
+      rejectedByIp.increment();
+      reject(response, waitMs);
+      return;
+    }
+
+    if ("POST".equals(request.getMethod())) {
+      // Read up to the cap whatever the declared length, chunked or padded bodies must not skip the email limit
+      byte[] body = request.getContentLengthLong() > MAX_BODY_BYTES ? null : readBody(request.getInputStream());
+      if (body == null) {
+        rejectedTooLarge.increment();
+        write(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, PAYLOAD_TOO_LARGE_BODY);
+        return;
+      }
+      String email = readEmail(body);
+      if (email != null) {
+        waitMs = emailLimiter.tryAcquire(email);
+        if (waitMs > 0) {
+          rejectedByEmail.increment();
+          reject(response, waitMs);
+          return;
+        }
+      }
+      request = new CachedBodyRequest(request, body);
+    }
+
+    filterChain.doFilter(request, response);
+  }
+
+  public long getRejectedByIp() {
+    return rejectedByIp.sum();
+  }
+
+  public long getRejectedByEmail() {
+    return rejectedByEmail.sum();
+  }
+
+  public long getRejectedTooLarge() {
+    return rejectedTooLarge.sum();
+  }
+
+  private String readEmail(byte[] body) {
+    try {
+      JsonNode email = objectMapper.readTree(body).get("email");
+      return email != null && email.isTextual() ? email.asText().trim().toLowerCase(Locale.ROOT) : null;
+    } catch (IOException | RuntimeException e) {
+      // Let the controller answer malformed bodies with its usual validation error
+      return null;
+    }
+  }
+
+  // The body, or null when it is larger than MAX_BODY_BYTES
+  private static byte[] readBody(InputStream in) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      body.write(buffer, 0, read);
+      if (body.size() > MAX_BODY_BYTES) {
+        return null;
+      }
+    }
+    return body.toByteArray();
+  }
+
+  private static void reject(HttpServletResponse response, long waitMs) throws IOException {
+    response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.MILLISECONDS.toSeconds(waitMs + 999))));
+    write(response, 429, TOO_MANY_REQUESTS_BODY);
+  }
+
+  private static void write(HttpServletResponse response, int status, byte[] body) throws IOException {
+    response.setStatus(status);
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response.setContentLength(body.length);
+    response.getOutputStream().write(body);
+  }
+
+  private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+    private final byte[] body;
+
+    private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+      super(request);
+      this.body = body;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+      ByteArrayInputStream in = new ByteArrayInputStream(body);
+      return new ServletInputStream() {
+        @Override
+        public int read() {
+          return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+          return in.read(b, off, len);
+        }
+
+        @Override
+        public boolean isFinished() {
+          return in.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+          return true;
+        }
+
+        // The body is already buffered: it is all available, then all read, right away
+        @Override
+        public void setReadListener(ReadListener readListener) {
+          try {
+            if (!isFinished()) {
+              readListener.onDataAvailable();
+            }
+            readListener.onAllDataRead();
+          } catch (IOException | RuntimeException e) {
+            readListener.onError(e);
+          }
+        }
+      };
+    }
+
+    @Override
+    public int getContentLength() {
+      return body.length;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+      return body.length;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets keyed by an arbitrary string (client IP, email...). Keys are spread over a fixed
+ * number of independently locked stripes, each holding a bounded access-ordered map, so memory
+ * stays bounded and idle buckets are dropped first.
+ */
+public class TokenBucketRateLimiter {
+  private final Stripe[] stripes;
+
+  private final double capacity;
+
+  private final double refillPerNano;
+
+  private final int maxKeysPerStripe;
+
+  private final long idleNanos;
+
+  private final LongAdder evictions = new LongAdder();
+
+  public TokenBucketRateLimiter(int capacity, int refillPerMinute, int stripeCount, int maxKeys, long idleMs) {
+    this.capacity = capacity;
+    this.refillPerNano = refillPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+    this.maxKeysPerStripe = Math.max(1, maxKeys / stripeCount);
+    this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMs);
+    this.stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * Takes one token for the key. Returns 0 when the call is allowed, otherwise the number of
+   * milliseconds until a token becomes available.
+   */
+  public long tryAcquire(String key) {
+    long now = System.nanoTime();
+    Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % stripes.length];
+
+    synchronized (stripe) {
+      Bucket bucket = stripe.buckets.get(key);
+      if (bucket == null) {
+        bucket = new Bucket(capacity, now);
+        stripe.buckets.put(key, bucket);
+      } else {
+        bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.updatedAt) * refillPerNano);
+        bucket.updatedAt = now;
+      }
+
+      if (bucket.tokens >= 1) {
+        bucket.tokens -= 1;
+        return 0;
+      }
+      return Math.max(1, TimeUnit.NANOSECONDS.toMillis((long) ((1 - bucket.tokens) / refillPerNano)));
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.buckets.size();
+      }
+    }
+    return size;
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  private final class Stripe {
+    private final Map<String, Bucket> buckets = new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+        boolean evict = size() > maxKeysPerStripe || System.nanoTime() - eldest.getValue().updatedAt > idleNanos;
+        if (evict) {
+          evictions.increment();
+        }
+        return evict;
+      }
+    };
+  }
+
+  private static final class Bucket {
+    private double tokens;
+    private long updatedAt;
+
+    private Bucket(double tokens, long updatedAt) {
+      this.tokens = tokens;
+      this.updatedAt = updatedAt;
+    }
+  }
+}
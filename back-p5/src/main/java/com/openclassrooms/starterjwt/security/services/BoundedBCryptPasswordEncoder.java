@@ -0,0 +1,178 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+
+/**
+ * BCrypt encoder running every hash and verification on a dedicated, size-limited pool so that
+ * login bursts cannot take CPU from the request threads. When the pool and its queue are full the
+ * caller gets a {@link ServiceUnavailableException} straight away.
+ */
+public class BoundedBCryptPasswordEncoder implements PasswordEncoder, DisposableBean {
+  private static final Logger logger = LoggerFactory.getLogger(BoundedBCryptPasswordEncoder.class);
+
+  private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+
+  private static final int CALIBRATION_STRENGTH = 8;
+
+  private final BCryptPasswordEncoder delegate;
+
+  private final int strength;
+
+  private final ThreadPoolExecutor executor;
+
+  private final long timeoutMs;
+
+  private final long retryAfterSeconds;
+
+  private final LongAdder hashCount = new LongAdder();
+  private final LongAdder hashNanos = new LongAdder();
+  private final LongAdder rejectedCount = new LongAdder();
+
+  public BoundedBCryptPasswordEncoder(int strength, int threads, int queueCapacity, long timeoutMs, long retryAfterSeconds) {
+    this.strength = strength;
+    this.delegate = new BCryptPasswordEncoder(strength);
+    this.timeoutMs = timeoutMs;
+    this.retryAfterSeconds = retryAfterSeconds;
+
+    int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("bcrypt-");
+    threadFactory.setDaemon(true);
+    this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword) {
+    return execute(() -> delegate.encode(rawPassword));
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    return execute(() -> delegate.matches(rawPassword, encodedPassword));
+  }
+
+  /**
+   * Asks for a rehash whenever the stored cost differs from the configured one, in both directions,
+   * so that lowering the work factor also takes effect on the next login.
+   */
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    int cost = getCost(encodedPassword);
+    return cost > 0 && cost != strength;
+  }
+
+  public int getStrength() {
+    return strength;
+  }
+
+  /**
+   * Picks the bcrypt cost whose hash time on this machine is closest to the target, knowing that
+   * each extra cost unit doubles the work.
+   */
+  public static int calibrateStrength(long targetMs, int minStrength, int maxStrength) {
+    String salt = BCrypt.gensalt(CALIBRATION_STRENGTH);
+    long bestNanos = Long.MAX_VALUE;
+    for (int i = 0; i < 3; i++) {
+      long start = System.nanoTime();
+      BCrypt.hashpw("calibration", salt);
+      bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+    }
+
+    double ratio = TimeUnit.MILLISECONDS.toNanos(targetMs) / (double) Math.max(bestNanos, 1);
+    int strength = CALIBRATION_STRENGTH + (int) Math.round(Math.log(ratio) / Math.log(2));
+    strength = Math.max(minStrength, Math.min(maxStrength, strength));
+
+    logger.info("BCrypt cost {} hashes in {} us, using cost {} for a {} ms target",
+        CALIBRATION_STRENGTH, TimeUnit.NANOSECONDS.toMicros(bestNanos), strength, targetMs);
+    return strength;
+  }
+
+  static int getCost(String encodedPassword) {
+    if (encodedPassword == null) {
+      return -1;
+    }
+    Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+    return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+  }
+
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  public long getHashCount() {
+    return hashCount.sum();
+  }
+
+  public long getAverageHashMicros() {
+    long count = hashCount.sum();
+    return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(hashNanos.sum() / count);
+  }
+
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+  }
+
+  private <T> T execute(Callable<T> task) {
+    Future<T> future;
+    try {
+      future = executor.submit(() -> {
+        long start = System.nanoTime();
+        try {
+          return task.call();
+        } finally {
+          hashNanos.add(System.nanoTime() - start);
+          hashCount.increment();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      rejectedCount.increment();
+      throw new ServiceUnavailableException(retryAfterSeconds);
+    }
+
+    try {
+      return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      rejectedCount.increment();
+      throw new ServiceUnavailableException(retryAfterSeconds);
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new ServiceUnavailableException(retryAfterSeconds);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+}
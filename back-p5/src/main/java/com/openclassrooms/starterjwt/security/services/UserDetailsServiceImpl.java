@@ -1,6 +1,14 @@
 package com.openclassrooms.starterjwt.security.services;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -10,27 +18,178 @@ import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
+  private static final int MAX_REVALIDATED_USERS = 100000;
+
   UserRepository userRepository;
 
+  @Value("${oc.app.jwtPrincipalRevalidationMs}")
+  private long principalRevalidationMs;
+
+  @Value("${oc.app.userCacheSize}")
+  private int userCacheSize;
+
+  @Value("${oc.app.userCacheTtlMs}")
+  private long userCacheTtlMs;
+
+  // Last time each user id was confirmed to still exist, for principals rebuilt from token claims
+  private final Map<Long, Long> revalidatedAt = new ConcurrentHashMap<>();
+
+  private final Map<String, CachedUser> userCache = new ConcurrentHashMap<>();
+
+  // Bumped by every eviction, a load that read the database before it does not keep its entry
+  private final AtomicLong evictionGeneration = new AtomicLong();
+
+  private final LongAdder cacheHits = new LongAdder();
+  private final LongAdder cacheMisses = new LongAdder();
+  private final LongAdder cacheEvictions = new LongAdder();
+
   UserDetailsServiceImpl(UserRepository userRepository) {
     this.userRepository = userRepository;
   }
 
   @Override
-  @Transactional
   public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+    long now = System.currentTimeMillis();
+    CachedUser cached = userCache.get(username);
+    if (cached != null) {
+      if (now - cached.loadedAt < userCacheTtlMs) {
+        cacheHits.increment();
+        return cached.userDetails;
+      }
+      if (userCache.remove(username, cached)) {
+        cacheEvictions.increment();
+      }
+    }
+    cacheMisses.increment();
+
+    long generation = evictionGeneration.get();
     User user = userRepository.findByEmail(username)
         .orElseThrow(() -> new UsernameNotFoundException("User Not Found with email: " + username));
 
+    UserDetailsImpl userDetails = toUserDetails(user);
+
+    if (userCacheSize > 0) {
+      if (userCache.size() >= userCacheSize) {
+        evictEntries(now);
+      }
+      CachedUser entry = new CachedUser(userDetails, now);
+      userCache.put(username, entry);
+      // Checked after the put: an eviction that ran during the load either sees the entry or bumped the generation
+      if (evictionGeneration.get() != generation) {
+        userCache.remove(username, entry);
+      }
+    }
+    return userDetails;
+  }
+
+  /**
+   * Called by the authentication provider after a successful login when the stored hash was made
+   * with a different bcrypt cost than the current one.
+   */
+  @Override
+  @Transactional
+  public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+    User user = userRepository.findByEmail(userDetails.getUsername())
+        .orElseThrow(() -> new UsernameNotFoundException("User Not Found with email: " + userDetails.getUsername()));
+
+    user.setPassword(newPassword);
+    userRepository.save(user);
+    evictUser(user.getEmail());
+
+    return toUserDetails(user);
+  }
+
+  /**
+   * Tells whether a user still exists, hitting the database at most once per revalidation window
+   * so that deleted users lose access shortly after their deletion.
+   */
+  public boolean isUserActive(Long id) {
+    long now = System.currentTimeMillis();
+    Long checkedAt = revalidatedAt.get(id);
+    if (checkedAt != null && now - checkedAt < principalRevalidationMs) {
+      return true;
+    }
+
+    long generation = evictionGeneration.get();
+    if (!userRepository.existsById(id)) {
+      revalidatedAt.remove(id);
+      return false;
+    }
+
+    if (revalidatedAt.size() >= MAX_REVALIDATED_USERS) {
+      revalidatedAt.clear();
+    }
+    revalidatedAt.put(id, now);
+    if (evictionGeneration.get() != generation) {
+      revalidatedAt.remove(id, now);
+    }
+    return true;
+  }
+
+  public void evictUser(String email) {
+    evictionGeneration.incrementAndGet();
+    CachedUser cached = userCache.remove(email);
+    if (cached != null) {
+      revalidatedAt.remove(cached.userDetails.getId());
+    }
+  }
+
+  public void evictUser(Long id) {
+    evictionGeneration.incrementAndGet();
+    revalidatedAt.remove(id);
+    userCache.values().removeIf(cached -> id.equals(cached.userDetails.getId()));
+  }
+
+  public long getCacheHits() {
+    return cacheHits.sum();
+  }
+
+  public long getCacheMisses() {
+    return cacheMisses.sum();
+  }
+
+  public long getCacheEvictions() {
+    return cacheEvictions.sum();
+  }
+
+  private static UserDetailsImpl toUserDetails(User user) {
     return UserDetailsImpl
             .builder()
             .id(user.getId())
             .username(user.getEmail())
             .lastName(user.getLastName())
             .firstName(user.getFirstName())
+            .admin(user.isAdmin())
             .password(user.getPassword())
             .build();
   }
 
+  private void evictEntries(long now) {
+    Iterator<CachedUser> entries = userCache.values().iterator();
+    while (entries.hasNext()) {
+      if (now - entries.next().loadedAt >= userCacheTtlMs) {
+        entries.remove();
+        cacheEvictions.increment();
+      }
+    }
+
+    Iterator<String> keys = userCache.keySet().iterator();
+    while (userCache.size() >= userCacheSize && keys.hasNext()) {
+      keys.next();
+      keys.remove();
+      cacheEvictions.increment();
+    }
+  }
+
+  private static final class CachedUser {
+    private final UserDetailsImpl userDetails;
+    private final long loadedAt;
+
+    private CachedUser(UserDetailsImpl userDetails, long loadedAt) {
+      this.userDetails = userDetails;
+      this.loadedAt = loadedAt;
+    }
+  }
+
 }
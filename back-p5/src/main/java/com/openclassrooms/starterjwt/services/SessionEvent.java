@@ -0,0 +1,30 @@
+package com.openclassrooms.starterjwt.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published by SessionService and pushed to the clients of GET /api/session/stream once the
+ * change is committed.
+ */
+@Data
+@AllArgsConstructor
+public class SessionEvent {
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        PARTICIPATE,
+        UNPARTICIPATE,
+        // Bulk import, clients resync through GET /api/session/changes
+        IMPORTED
+    }
+
+    private Type type;
+
+    // Not set for imported
+    private Long sessionId;
+
+    // Only set for participate and unparticipate
+    private Long userId;
+}
@@ -0,0 +1,310 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fans committed session events out to the SSE subscribers. Emitters are async requests, so no
+ * servlet thread is held per subscriber; a small pool writes the frames. Each subscriber has a
+ * bounded buffer and is disconnected when it overflows, a slow client never slows down the others.
+ * A write stuck on a client socket for longer than the send timeout also disconnects it.
+ * <p>
+ * An emitter holds its monitor for the whole write and its completion needs that monitor too, so it
+ * is only ever completed by its own writer: the timer and the publishing threads just mark the
+ * subscriber closed and never wait for a client.
+ */
+@Component
+@Log4j2
+public class SessionEventBroadcaster implements DisposableBean {
+    private static final int MAX_FRAMES_PER_DRAIN = 32;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final AtomicLong eventIds = new AtomicLong();
+
+    private final LongAdder droppedSubscribers = new LongAdder();
+
+    private final ObjectMapper objectMapper;
+
+    private final ExecutorService dispatcher;
+
+    private final ScheduledExecutorService timer;
+
+    private final int maxSubscribers;
+
+    private final int bufferSize;
+
+    private final long timeoutMs;
+
+    private final long retryAfterSeconds;
+
+    private final long sendTimeoutMs;
+
+    public SessionEventBroadcaster(ObjectMapper objectMapper,
+                                   @Value("${oc.app.sessionStreamMaxSubscribers}") int maxSubscribers,
+                                   @Value("${oc.app.sessionStreamBufferSize}") int bufferSize,
+                                   @Value("${oc.app.sessionStreamTimeoutMs}") long timeoutMs,
+                                   @Value("${oc.app.sessionStreamHeartbeatMs}") long heartbeatMs,
+                                   @Value("${oc.app.sessionStreamDispatchThreads}") int dispatchThreads,
+                                   @Value("${oc.app.sessionStreamRetryAfterSeconds}") long retryAfterSeconds,
+                                   @Value("${oc.app.sessionStreamSendTimeoutMs}") long sendTimeoutMs) {
+        this.objectMapper = objectMapper;
+        this.maxSubscribers = maxSubscribers;
+        this.bufferSize = bufferSize;
+        this.timeoutMs = timeoutMs;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.sendTimeoutMs = sendTimeoutMs;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "session-stream-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Its own thread, so heartbeats and stalled writes are still handled when every writer is blocked
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-stream-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.scheduleAtFixedRate(this::sendHeartbeats, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        long checkMs = Math.max(1, sendTimeoutMs / 2);
+        this.timer.scheduleAtFixedRate(this::evictStalled, checkMs, checkMs, TimeUnit.MILLISECONDS);
+    }
+
+    protected SseEmitter createEmitter() {
+        return new SseEmitter(timeoutMs);
+    }
+
+    public SseEmitter subscribe() {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new ServiceUnavailableException(retryAfterSeconds);
+        }
+
+        Subscriber subscriber = new Subscriber(createEmitter(), new ArrayBlockingQueue<>(bufferSize));
+        // The emitter is already done, only the bookkeeping is left
+        subscriber.emitter.onCompletion(() -> finished(subscriber));
+        subscriber.emitter.onTimeout(() -> finished(subscriber));
+        subscriber.emitter.onError(e -> finished(subscriber));
+        subscribers.add(subscriber);
+        return subscriber.emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionEvent(SessionEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        // Serialized once for all the subscribers
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            log.warn("Could not serialize session event {}", event, e);
+            return;
+        }
+
+        Frame frame = new Frame(String.valueOf(eventIds.incrementAndGet()), event.getType().name().toLowerCase(), data);
+        for (Subscriber subscriber : subscribers) {
+            enqueue(subscriber, frame);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    public long getDroppedSubscribers() {
+        return droppedSubscribers.sum();
+    }
+
+    @Override
+    public void destroy() {
+        timer.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            close(subscriber, null);
+        }
+        // The writers complete the emitters, a stalled one does not hold up the shutdown of the daemon threads
+        dispatcher.shutdown();
+    }
+
+    private void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers) {
+            enqueue(subscriber, Frame.HEARTBEAT);
+        }
+    }
+
+    // The stalled writer completes the emitter once its write returns or fails on the socket timeout
+    private void evictStalled() {
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            long sendingSince = subscriber.sendingSince;
+            if (sendingSince != 0 && now - sendingSince >= sendTimeoutMs) {
+                drop(subscriber, new TimeoutException("Session stream send timed out"));
+            }
+        }
+    }
+
+    private void enqueue(Subscriber subscriber, Frame frame) {
+        if (!subscriber.queue.offer(frame)) {
+            drop(subscriber, null);
+            return;
+        }
+        schedule(subscriber);
+    }
+
+    private void drop(Subscriber subscriber, Throwable error) {
+        if (close(subscriber, error)) {
+            droppedSubscribers.increment();
+        }
+    }
+
+    // Stops the frames and hands the completion of the emitter over to its writer
+    private boolean close(Subscriber subscriber, Throwable error) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return false;
+        }
+        subscriber.error = error;
+        remove(subscriber);
+        schedule(subscriber);
+        return true;
+    }
+
+    private void finished(Subscriber subscriber) {
+        subscriber.closed.set(true);
+        subscriber.completed.set(true);
+        remove(subscriber);
+    }
+
+    // At most one pending drain per subscriber, so frames are written in order by a single thread
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(subscriber));
+        }
+    }
+
+    // Writes at most MAX_FRAMES_PER_DRAIN frames, then yields the thread to the other subscribers.
+    // A closed subscriber is completed here, by the only thread that may be writing to it.
+    private void drain(Subscriber subscriber) {
+        try {
+            Frame frame;
+            for (int sent = 0; sent < MAX_FRAMES_PER_DRAIN && !subscriber.closed.get()
+                    && (frame = subscriber.queue.poll()) != null; sent++) {
+                send(subscriber, frame);
+            }
+        } catch (IOException | RuntimeException e) {
+            // The client went away, the container reports it through the error callback
+            finished(subscriber);
+        } finally {
+            subscriber.draining.set(false);
+        }
+
+        if (subscriber.closed.get()) {
+            complete(subscriber);
+        } else if (!subscriber.queue.isEmpty()) {
+            schedule(subscriber);
+        }
+    }
+
+    private void send(Subscriber subscriber, Frame frame) throws IOException {
+        subscriber.sendingSince = System.currentTimeMillis();
+        try {
+            // A new builder per send: a builder is mutable and cannot be shared between subscribers
+            subscriber.emitter.send(frame.toEvent());
+        } finally {
+            subscriber.sendingSince = 0;
+        }
+    }
+
+    private void complete(Subscriber subscriber) {
+        if (!subscriber.completed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (subscriber.error != null) {
+                subscriber.emitter.completeWithError(subscriber.error);
+            } else {
+                subscriber.emitter.complete();
+            }
+        } catch (RuntimeException e) {
+            log.debug("Could not complete a session stream", e);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+            subscriber.queue.clear();
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Frame> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        // Set by close before the writer is scheduled
+        private volatile Throwable error;
+        // Start of the write in progress, 0 when the writer is idle
+        private volatile long sendingSince;
+
+        private Subscriber(SseEmitter emitter, BlockingQueue<Frame> queue) {
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+    }
+
+    /**
+     * An event serialized once and shared by all the subscriber queues, immutable so it can be
+     * written concurrently by the writer threads.
+     */
+    private static final class Frame {
+        private static final Frame HEARTBEAT = new Frame(null, null, null);
+
+        private final String id;
+        private final String name;
+        private final String data;
+
+        private Frame(String id, String name, String data) {
+            this.id = id;
+            this.name = name;
+            this.data = data;
+        }
+
+        private SseEventBuilder toEvent() {
+            if (data == null) {
+                return SseEmitter.event().comment("heartbeat");
+            }
+            return SseEmitter.event().id(id).name(name).data(data, MediaType.APPLICATION_JSON);
+        }
+    }
+}
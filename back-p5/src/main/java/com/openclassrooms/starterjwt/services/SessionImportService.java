@@ -0,0 +1,192 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionImportReportDto;
+import com.openclassrooms.starterjwt.dto.SessionImportReportDto.RowError;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Creates many sessions at once: every row is validated first, then all of them are inserted with
+ * JDBC batches in a single transaction. The import is all or nothing, a report lists the rows to fix.
+ * With pooled ids the ids come from Hibernate, so the rows are persisted and flushed by batches instead.
+ */
+@Service
+public class SessionImportService {
+    private static final String INSERT_SESSION = "insert into SESSIONS "
+            + "(name, date, description, teacher_id, capacity, seats_taken, version, created_at, updated_at) "
+            + "values (?, ?, ?, ?, ?, 0, 0, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TeacherService teacherService;
+
+    private final Validator validator;
+
+    private final ObjectReader sessionReader;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${oc.app.sessionImportBatchSize}")
+    private int batchSize;
+
+    @Value("${oc.app.sessionImportMaxRows}")
+    private int maxRows;
+
+    @Value("${oc.app.pooledIds}")
+    private boolean pooledIds;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public SessionImportService(JdbcTemplate jdbcTemplate,
+                                TeacherService teacherService,
+                                Validator validator,
+                                ObjectMapper objectMapper,
+                                ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.teacherService = teacherService;
+        this.validator = validator;
+        this.sessionReader = objectMapper.readerFor(SessionDto.class);
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Transactional
+    public SessionImportReportDto importSessions(List<SessionDto> sessions) {
+        List<RowError> errors = new ArrayList<>();
+        if (sessions.size() > maxRows) {
+            errors.add(new RowError(maxRows, Collections.singletonList("Error: At most " + maxRows + " rows per import")));
+            return new SessionImportReportDto(0, errors);
+        }
+
+        for (int row = 0; row < sessions.size(); row++) {
+            List<String> messages = validate(sessions.get(row));
+            if (!messages.isEmpty()) {
+                errors.add(new RowError(row, messages));
+            }
+        }
+        if (!errors.isEmpty()) {
+            return new SessionImportReportDto(0, errors);
+        }
+
+        if (pooledIds) {
+            persistInBatches(sessions);
+        } else {
+            insertInBatches(sessions);
+        }
+        this.eventPublisher.publishEvent(new SessionEvent(SessionEvent.Type.IMPORTED, null, null));
+        return new SessionImportReportDto(sessions.size(), errors);
+    }
+
+    /**
+     * Reads one SessionDto per line, unreadable lines are reported like invalid rows.
+     */
+    @Transactional
+    public SessionImportReportDto importNdjson(InputStream input) throws IOException {
+        List<SessionDto> sessions = new ArrayList<>();
+        List<RowError> errors = new ArrayList<>();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (sessions.size() > maxRows) {
+                break;
+            }
+            try {
+                sessions.add(sessionReader.readValue(line));
+            } catch (JsonProcessingException e) {
+                errors.add(new RowError(sessions.size(), Collections.singletonList("Error: Unreadable row " + e.getOriginalMessage())));
+                sessions.add(null);
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            return new SessionImportReportDto(0, errors);
+        }
+        return importSessions(sessions);
+    }
+
+    private void insertInBatches(List<SessionDto> sessions) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_SESSION, sessions, batchSize, (statement, session) -> {
+            statement.setString(1, session.getName());
+            statement.setTimestamp(2, new Timestamp(session.getDate().getTime()));
+            statement.setString(3, session.getDescription());
+            statement.setLong(4, session.getTeacher_id());
+            if (session.getCapacity() != null) {
+                statement.setInt(5, session.getCapacity());
+            } else {
+                statement.setNull(5, Types.INTEGER);
+            }
+            statement.setTimestamp(6, now);
+            statement.setTimestamp(7, now);
+        });
+    }
+
+    private void persistInBatches(List<SessionDto> sessions) {
+        for (int row = 0; row < sessions.size(); row++) {
+            SessionDto session = sessions.get(row);
+            this.entityManager.persist(Session.builder()
+                    .name(session.getName())
+                    .date(session.getDate())
+                    .description(session.getDescription())
+                    .teacher(this.entityManager.getReference(Teacher.class, session.getTeacher_id()))
+                    .capacity(session.getCapacity())
+                    .users(new ArrayList<>())
+                    .build());
+            if ((row + 1) % batchSize == 0) {
+                this.entityManager.flush();
+                this.entityManager.clear();
+            }
+        }
+        this.entityManager.flush();
+        this.entityManager.clear();
+    }
+
+    private List<String> validate(SessionDto session) {
+        List<String> messages = new ArrayList<>();
+        if (session == null) {
+            messages.add("Error: Empty row");
+            return messages;
+        }
+
+        for (ConstraintViolation<SessionDto> violation : validator.validate(session)) {
+            messages.add(violation.getPropertyPath() + ": " + violation.getMessage());
+        }
+        // Served from the in-memory teacher catalog, no query per row
+        if (session.getTeacher_id() != null && teacherService.findDtoById(session.getTeacher_id()) == null) {
+            messages.add("Error: Unknown teacher id " + session.getTeacher_id());
+        }
+        if (session.getUsers() != null && !session.getUsers().isEmpty()) {
+            messages.add("Error: Participants cannot be imported, they enrol afterwards");
+        }
+        return messages;
+    }
+}
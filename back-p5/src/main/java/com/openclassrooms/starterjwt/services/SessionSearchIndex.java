@@ -0,0 +1,363 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Inverted index over the session names and descriptions, ranked with BM25. Terms are lower-cased
+ * and stripped of their accents, query terms also match as prefixes. The index is filled in the
+ * background once the application is ready and then follows the committed session events. A failed
+ * rebuild is retried with an exponential backoff.
+ */
+@Component
+@Log4j2
+public class SessionSearchIndex implements DisposableBean {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // A word of the name counts as much as two words of the description
+    private static final int NAME_WEIGHT = 2;
+
+    // A completion of a prefix ranks below the exact word
+    private static final double PREFIX_WEIGHT = 0.5;
+
+    private static final long MAX_REBUILD_RETRY_MS = 60_000;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // term -> session id -> weighted term frequency, sorted for prefix lookups
+    private TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+
+    private Map<Long, Document> documents = new HashMap<>();
+
+    private long totalLength;
+
+    // Sessions changed while a rebuild was loading, applied again once it is swapped in
+    private final Set<Long> pendingIds = new LinkedHashSet<>();
+
+    private boolean rebuilding;
+
+    // Taken before each database read: a read with a higher sequence saw every change of a lower one
+    private final AtomicLong sequence = new AtomicLong();
+
+    // Session id -> sequence of the last refresh applied, kept for deleted sessions too so that a late
+    // refresh cannot add them back. Cleared by a rebuild, older refreshes are then dropped by minSequence.
+    private final Map<Long, Long> appliedSequences = new HashMap<>();
+
+    private long minSequence;
+
+    // Only used by the rebuilder thread
+    private int failedRebuilds;
+
+    private volatile boolean ready;
+
+    private final SessionRepository sessionRepository;
+
+    private final ScheduledExecutorService rebuilder;
+
+    private final long retryAfterSeconds;
+
+    private final long rebuildRetryMs;
+
+    public SessionSearchIndex(SessionRepository sessionRepository,
+                              @Value("${oc.app.sessionSearchRetryAfterSeconds}") long retryAfterSeconds,
+                              @Value("${oc.app.sessionSearchRebuildRetryMs}") long rebuildRetryMs) {
+        this.sessionRepository = sessionRepository;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.rebuildRetryMs = rebuildRetryMs;
+        this.rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-search-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildInBackground();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionEvent(SessionEvent event) {
+        switch (event.getType()) {
+            case CREATED:
+            case UPDATED:
+            case DELETED:
+                refresh(event.getSessionId());
+                break;
+            case IMPORTED:
+                rebuildInBackground();
+                break;
+            default:
+                // Bookings do not change the indexed text
+                break;
+        }
+    }
+
+    public void rebuildInBackground() {
+        this.rebuilder.submit(this::rebuild);
+    }
+
+    /**
+     * Returns the ids of the sessions matching every query term, best match first.
+     */
+    public List<Long> search(String query, int limit) {
+        if (!ready) {
+            throw new ServiceUnavailableException(retryAfterSeconds);
+        }
+        List<String> terms = tokenize(query).stream().distinct().collect(Collectors.toList());
+        if (terms.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, Double> scores = null;
+        lock.readLock().lock();
+        try {
+            if (documents.isEmpty()) {
+                return new ArrayList<>();
+            }
+            for (String term : terms) {
+                Map<Long, Double> termScores = score(term);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    for (Map.Entry<Long, Double> score : scores.entrySet()) {
+                        score.setValue(score.getValue() + termScores.get(score.getKey()));
+                    }
+                }
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        this.rebuilder.shutdownNow();
+    }
+
+    private Map<Long, Double> score(String term) {
+        Map<Long, Double> scores = new HashMap<>();
+        double documentCount = documents.size();
+        double averageLength = (double) totalLength / documents.size();
+
+        for (Map.Entry<String, Map<Long, Integer>> entry
+                : postings.subMap(term, true, term + Character.MAX_VALUE, true).entrySet()) {
+            double weight = entry.getKey().length() == term.length() ? 1.0 : PREFIX_WEIGHT;
+            Map<Long, Integer> frequencies = entry.getValue();
+            double idf = Math.log(1 + (documentCount - frequencies.size() + 0.5) / (frequencies.size() + 0.5));
+
+            for (Map.Entry<Long, Integer> frequency : frequencies.entrySet()) {
+                int length = documents.get(frequency.getKey()).length;
+                double tf = frequency.getValue();
+                double score = weight * idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / averageLength));
+                scores.merge(frequency.getKey(), score, Math::max);
+            }
+        }
+        return scores;
+    }
+
+    private void rebuild() {
+        try {
+            long rebuildSequence;
+            lock.writeLock().lock();
+            try {
+                rebuilding = true;
+                rebuildSequence = sequence.incrementAndGet();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            TreeMap<String, Map<Long, Integer>> newPostings = new TreeMap<>();
+            Map<Long, Document> newDocuments = new HashMap<>();
+            long newTotalLength = 0;
+            for (SessionDto session : this.sessionRepository.findAllDtos()) {
+                Document document = toDocument(session);
+                newDocuments.put(session.getId(), document);
+                newTotalLength += document.length;
+                addPostings(newPostings, session.getId(), document);
+            }
+
+            List<Long> changed;
+            lock.writeLock().lock();
+            try {
+                postings = newPostings;
+                documents = newDocuments;
+                totalLength = newTotalLength;
+                rebuilding = false;
+                appliedSequences.clear();
+                minSequence = rebuildSequence;
+                changed = new ArrayList<>(pendingIds);
+                pendingIds.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            changed.forEach(this::refresh);
+            ready = true;
+            failedRebuilds = 0;
+            log.info("Session search index rebuilt with {} sessions", newDocuments.size());
+        } catch (RuntimeException e) {
+            // The pending ids are kept, the retry reloads them anyway
+            lock.writeLock().lock();
+            try {
+                rebuilding = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            long delayMs = Math.min(MAX_REBUILD_RETRY_MS, rebuildRetryMs << Math.min(failedRebuilds, 16));
+            failedRebuilds++;
+            log.error("Session search index rebuild failed, retrying in {} ms", delayMs, e);
+            this.rebuilder.schedule(this::rebuild, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void refresh(Long id) {
+        long refreshSequence = sequence.incrementAndGet();
+        SessionDto session = this.sessionRepository.findDtoById(id).orElse(null);
+        Document document = session != null ? toDocument(session) : null;
+
+        lock.writeLock().lock();
+        try {
+            if (rebuilding) {
+                pendingIds.add(id);
+                return;
+            }
+            // Two listeners racing on the same session: a refresh that read the database first is stale
+            Long applied = appliedSequences.get(id);
+            if (refreshSequence < minSequence || (applied != null && applied > refreshSequence)) {
+                return;
+            }
+            appliedSequences.put(id, refreshSequence);
+            Document previous = documents.get(id);
+            if (previous != null) {
+                removePostings(id, previous);
+                documents.remove(id);
+                totalLength -= previous.length;
+            }
+            if (document != null) {
+                addPostings(postings, id, document);
+                documents.put(id, document);
+                totalLength += document.length;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void addPostings(TreeMap<String, Map<Long, Integer>> postings, Long id, Document document) {
+        for (Map.Entry<String, Integer> term : document.frequencies.entrySet()) {
+            postings.computeIfAbsent(term.getKey(), k -> new HashMap<>()).put(id, term.getValue());
+        }
+    }
+
+    private void removePostings(Long id, Document document) {
+        for (String term : document.frequencies.keySet()) {
+            Map<Long, Integer> frequencies = postings.get(term);
+            if (frequencies != null) {
+                frequencies.remove(id);
+                if (frequencies.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private static Document toDocument(SessionDto session) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = 0;
+        for (String term : tokenize(session.getName())) {
+            frequencies.merge(term, NAME_WEIGHT, Integer::sum);
+            length += NAME_WEIGHT;
+        }
+        for (String term : tokenize(session.getDescription())) {
+            frequencies.merge(term, 1, Integer::sum);
+            length++;
+        }
+        return new Document(frequencies, length);
+    }
+
+    /**
+     * Lower-cases and folds accents and ligatures, so "Été" finds "ete". Single letters such as the
+     * French elisions ("l'", "d'") are dropped.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String folded = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        folded = MARKS.matcher(folded).replaceAll("").replace("œ", "oe").replace("æ", "ae");
+
+        List<String> terms = new ArrayList<>();
+        for (String term : SEPARATORS.split(folded)) {
+            if (term.length() > 1) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private static final class Document {
+        private final Map<String, Integer> frequencies;
+
+        private final int length;
+
+        private Document(Map<String, Integer> frequencies, int length) {
+            this.frequencies = frequencies;
+            this.length = length;
+        }
+    }
+}
@@ -1,78 +1,501 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.SessionCalendarDto;
+import com.openclassrooms.starterjwt.dto.SessionChangesDto;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.GoneException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
-import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.models.SessionTombstone;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionTombstoneRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
 public class SessionService {
+    private static final long SYNC_OVERLAP_MS = 5000;
+
     private final SessionRepository sessionRepository;
 
     private final UserRepository userRepository;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    private final SessionTombstoneRepository sessionTombstoneRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final SessionSearchIndex sessionSearchIndex;
+
+    // Incremented by every session write, listing ETags are derived from it. Kept in memory so that
+    // bookings of different sessions do not contend on a shared row; it starts from the startup time
+    // so that a restart does not hand out the tags of the previous run again.
+    private final AtomicLong catalogVersion = new AtomicLong(System.currentTimeMillis());
+
+    @Value("${oc.app.sessionTombstoneRetentionMs}")
+    private long tombstoneRetentionMs;
+
+    @Value("${oc.app.sessionPageDefaultSize}")
+    private int pageDefaultSize;
+
+    @Value("${oc.app.sessionPageMaxSize}")
+    private int pageMaxSize;
+
+    @Value("${oc.app.sessionRangeMaxDays}")
+    private long rangeMaxDays;
+
+    @Value("${oc.app.sessionSearchMaxResults}")
+    private int searchMaxResults;
+
+    public SessionService(SessionRepository sessionRepository,
+                          UserRepository userRepository,
+                          SessionTombstoneRepository sessionTombstoneRepository,
+                          ApplicationEventPublisher eventPublisher,
+                          SessionSearchIndex sessionSearchIndex) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.sessionTombstoneRepository = sessionTombstoneRepository;
+        this.eventPublisher = eventPublisher;
+        this.sessionSearchIndex = sessionSearchIndex;
     }
 
+    @Transactional
     public Session create(Session session) {
-        return this.sessionRepository.save(session);
+        checkCapacity(session);
+        Session created = this.sessionRepository.save(session);
+        syncSeatsTaken(created.getId());
+        this.eventPublisher.publishEvent(new SessionEvent(SessionEvent.Type.CREATED, created.getId(), null));
+        return created;
     }
 
+    @Transactional
     public void delete(Long id) {
         this.sessionRepository.deleteById(id);
+
+        LocalDateTime now = LocalDateTime.now();
+        this.sessionTombstoneRepository.save(SessionTombstone.builder().sessionId(id).deletedAt(now).build());
+        this.sessionTombstoneRepository.deleteOlderThan(now.minus(tombstoneRetentionMs, ChronoUnit.MILLIS));
+        this.catalogVersion.incrementAndGet();
+        this.eventPublisher.publishEvent(new SessionEvent(SessionEvent.Type.DELETED, id, null));
     }
 
     public List<Session> findAll() {
         return this.sessionRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
+    public List<SessionDto> findAllDtos() {
+        List<SessionDto> sessions = this.sessionRepository.findAllDtos();
+        return attachParticipants(sessions, this.sessionRepository.findAllParticipantIds());
+    }
+
+    @Transactional(readOnly = true)
+    public SessionDto findDtoById(Long id) {
+        SessionDto session = this.sessionRepository.findDtoById(id).orElse(null);
+        if (session == null) {
+            return null;
+        }
+        attachParticipants(Collections.singletonList(session),
+                this.sessionRepository.findParticipantIds(Collections.singletonList(id)));
+        return session;
+    }
+
+    /**
+     * Full-text search on the session names and descriptions, best match first.
+     */
+    @Transactional(readOnly = true)
+    public List<SessionDto> search(String query) {
+        List<Long> ids = this.sessionSearchIndex.search(query, searchMaxResults);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, SessionDto> sessionsById = this.sessionRepository.findDtosByIds(ids).stream()
+                .collect(Collectors.toMap(SessionDto::getId, session -> session));
+        // Keep the ranking of the index, a session deleted in the meantime is skipped
+        List<SessionDto> sessions = ids.stream()
+                .map(sessionsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return attachParticipants(sessions, this.sessionRepository.findParticipantIds(ids));
+    }
+
+    /**
+     * Returns the sessions created or updated after the given time and the ids of the sessions
+     * deleted since then. Deletions are only remembered for the retention period: an older sync
+     * point gets a 410 and the client has to reload the full list.
+     */
+    @Transactional(readOnly = true)
+    public SessionChangesDto findChanges(String since) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime sinceTime = parseTime(since);
+        if (sinceTime.isBefore(now.minus(tombstoneRetentionMs, ChronoUnit.MILLIS))) {
+            throw new GoneException();
+        }
+
+        List<SessionDto> updated = this.sessionRepository.findDtosUpdatedAfter(sinceTime);
+        if (!updated.isEmpty()) {
+            List<Long> ids = updated.stream().map(SessionDto::getId).collect(Collectors.toList());
+            attachParticipants(updated, this.sessionRepository.findParticipantIds(ids));
+        }
+        List<Long> deleted = this.sessionTombstoneRepository.findSessionIdsDeletedAfter(sinceTime);
+
+        // Overlap with the next sync so that late commits and second-precision timestamps are not missed
+        long syncedAt = now.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() - SYNC_OVERLAP_MS;
+        return new SessionChangesDto(updated, deleted, syncedAt);
+    }
+
+    /**
+     * Returns the sessions whose date is in [from, to), read with a range scan on the date index.
+     */
+    @Transactional(readOnly = true)
+    public List<SessionDto> findDtosBetween(String from, String to) {
+        return findDtosBetween(parseTime(from), parseTime(to));
+    }
+
+    /**
+     * Week (starting on Monday) or month containing the given day, with the sessions of every day.
+     */
+    @Transactional(readOnly = true)
+    public SessionCalendarDto findCalendar(String view, String date) {
+        LocalDate day = date == null ? LocalDate.now() : parseTime(date).toLocalDate();
+        LocalDate from;
+        LocalDate to;
+        if ("week".equals(view)) {
+            from = day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            to = from.plusWeeks(1);
+        } else if ("month".equals(view)) {
+            from = day.withDayOfMonth(1);
+            to = from.plusMonths(1);
+        } else {
+            throw new BadRequestException();
+        }
+
+        Map<LocalDate, List<SessionDto>> days = new LinkedHashMap<>();
+        for (LocalDate current = from; current.isBefore(to); current = current.plusDays(1)) {
+            days.put(current, new ArrayList<>());
+        }
+        for (SessionDto session : findDtosBetween(from.atStartOfDay(), to.atStartOfDay())) {
+            LocalDate sessionDay = session.getDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+            days.get(sessionDay).add(session);
+        }
+        return new SessionCalendarDto(from, to, days);
+    }
+
+    private List<SessionDto> findDtosBetween(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to) || from.plusDays(rangeMaxDays).isBefore(to)) {
+            throw new BadRequestException();
+        }
+
+        List<SessionDto> sessions = this.sessionRepository.findDtosBetween(
+                Date.from(from.atZone(ZoneId.systemDefault()).toInstant()),
+                Date.from(to.atZone(ZoneId.systemDefault()).toInstant()));
+        if (!sessions.isEmpty()) {
+            List<Long> ids = sessions.stream().map(SessionDto::getId).collect(Collectors.toList());
+            attachParticipants(sessions, this.sessionRepository.findParticipantIds(ids));
+        }
+        return sessions;
+    }
+
+    // Epoch millis or ISO-8601 date or date-time, with or without offset
+    private static LocalDateTime parseTime(String value) {
+        try {
+            if (value.chars().allMatch(Character::isDigit)) {
+                return LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(value)), ZoneId.systemDefault());
+            }
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay();
+            }
+            try {
+                return LocalDateTime.ofInstant(OffsetDateTime.parse(value).toInstant(), ZoneId.systemDefault());
+            } catch (DateTimeParseException e) {
+                return LocalDateTime.parse(value);
+            }
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new BadRequestException();
+        }
+    }
+
+    /**
+     * Returns the sessions ordered by (date, id) that come after the cursor. The page is read with
+     * an index range scan instead of an offset, so its cost does not grow with the table.
+     */
+    @Transactional(readOnly = true)
+    public Slice<SessionDto> findDtoPage(String cursor, Integer size) {
+        int pageSize = toPageSize(size);
+
+        // One extra row tells whether a next page exists without counting
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        List<SessionDto> sessions;
+        if (cursor == null || cursor.isEmpty()) {
+            sessions = this.sessionRepository.findDtoPage(pageRequest);
+        } else {
+            String[] position = decodeCursor(cursor, 2);
+            sessions = this.sessionRepository.findDtoPageAfter(
+                    new Date(Long.parseLong(position[0])), Long.valueOf(position[1]), pageRequest);
+        }
+
+        boolean hasNext = sessions.size() > pageSize;
+        if (hasNext) {
+            sessions = sessions.subList(0, pageSize);
+        }
+        if (!sessions.isEmpty()) {
+            List<Long> ids = sessions.stream().map(SessionDto::getId).collect(Collectors.toList());
+            attachParticipants(sessions, this.sessionRepository.findParticipantIds(ids));
+        }
+        return new SliceImpl<>(sessions, PageRequest.of(0, pageSize), hasNext);
+    }
+
+    /**
+     * Returns a page of the sessions booked by a user: upcoming ones first in date order, then the
+     * past ones, most recent first. The cursor keeps the time that split the two lists on the first
+     * page, so a session starting while the client pages through is neither skipped nor repeated.
+     */
+    @Transactional(readOnly = true)
+    public SessionPageDto findDtoPageByUser(Long userId, String cursor, Integer size) {
+        int pageSize = toPageSize(size);
+        long pivot;
+        boolean upcoming;
+        Date date;
+        long id;
+        if (cursor == null || cursor.isEmpty()) {
+            pivot = System.currentTimeMillis();
+            upcoming = true;
+            date = new Date(pivot);
+            id = 0;
+        } else {
+            String[] position = decodeCursor(cursor, 4);
+            pivot = Long.parseLong(position[0]);
+            upcoming = "1".equals(position[1]);
+            date = new Date(Long.parseLong(position[2]));
+            id = Long.parseLong(position[3]);
+        }
+
+        // One extra row tells whether a next page exists without counting
+        List<Long> ids = new ArrayList<>();
+        if (upcoming) {
+            this.sessionRepository.findUpcomingIdsByUser(userId, new Date(pivot), date, id, pageSize + 1)
+                    .forEach(sessionId -> ids.add(sessionId.longValue()));
+            date = new Date(pivot);
+            id = Long.MAX_VALUE;
+        }
+        if (ids.size() <= pageSize) {
+            this.sessionRepository.findPastIdsByUser(userId, new Date(pivot), date, id, pageSize + 1 - ids.size())
+                    .forEach(sessionId -> ids.add(sessionId.longValue()));
+        }
+
+        boolean hasNext = ids.size() > pageSize;
+        List<Long> pageIds = hasNext ? ids.subList(0, pageSize) : ids;
+        if (pageIds.isEmpty()) {
+            return new SessionPageDto(new ArrayList<>(), null);
+        }
+
+        Map<Long, SessionDto> sessionsById = this.sessionRepository.findDtosByIds(pageIds).stream()
+                .collect(Collectors.toMap(SessionDto::getId, session -> session));
+        List<SessionDto> sessions = pageIds.stream()
+                .map(sessionsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        attachParticipants(sessions, this.sessionRepository.findParticipantIds(pageIds));
+
+        String nextCursor = null;
+        if (hasNext && !sessions.isEmpty()) {
+            SessionDto last = sessions.get(sessions.size() - 1);
+            long lastDate = last.getDate().getTime();
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (pivot + ":" + (lastDate >= pivot ? "1" : "0") + ":" + lastDate + ":" + last.getId())
+                            .getBytes(StandardCharsets.UTF_8));
+        }
+        return new SessionPageDto(sessions, nextCursor);
+    }
+
+    private int toPageSize(Integer size) {
+        int pageSize = size == null ? pageDefaultSize : size;
+        if (pageSize <= 0) {
+            throw new BadRequestException();
+        }
+        return Math.min(pageSize, pageMaxSize);
+    }
+
+    /**
+     * Increments the catalog version again once a session write is committed: a listing read while the
+     * write was in flight may have been tagged with the version set by the write but the older body.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionEvent(SessionEvent event) {
+        this.catalogVersion.incrementAndGet();
+    }
+
+    /**
+     * Strong ETag for a listing, derived from the counter every session write increments instead of
+     * the body. Any change changes the tag of every page, pages differ by their parameters.
+     */
+    public String getListETag(Object... query) {
+        return toETag(this.catalogVersion.get(), query);
+    }
+
+    /**
+     * Strong ETag for one session from its version, or null when it does not exist.
+     */
+    public String getETag(Long id) {
+        List<Long> version = this.sessionRepository.findVersionById(id);
+        return version.isEmpty() ? null : toETag(id, version.get(0));
+    }
+
+    private static String toETag(Object... parts) {
+        StringBuilder value = new StringBuilder();
+        for (Object part : parts) {
+            value.append(part instanceof Object[] ? Arrays.toString((Object[]) part) : part).append(':');
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(value.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    public String encodeCursor(SessionDto session) {
+        String position = session.getDate().getTime() + ":" + session.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Groups the (session_id, user_id) rows by session in one pass over the result set
+    private static List<SessionDto> attachParticipants(List<SessionDto> sessions, List<Object[]> participants) {
+        Map<Long, List<Long>> usersBySession = new HashMap<>();
+        for (Object[] row : participants) {
+            usersBySession.computeIfAbsent(((Number) row[0]).longValue(), k -> new ArrayList<>())
+                    .add(((Number) row[1]).longValue());
+        }
+        for (SessionDto session : sessions) {
+            session.setUsers(usersBySession.getOrDefault(session.getId(), new ArrayList<>()));
+        }
+        return sessions;
+    }
+
+    private String[] decodeCursor(String cursor, int length) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (position.length != length) {
+                throw new BadRequestException();
+            }
+            for (String part : position) {
+                Long.parseLong(part);
+            }
+            return position;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException();
+        }
+    }
+
     public Session getById(Long id) {
         return this.sessionRepository.findById(id).orElse(null);
     }
 
+    @Transactional
     public Session update(Long id, Session session) {
         session.setId(id);
-        return this.sessionRepository.save(session);
+        // The DTO carries no version: the update applies to the current one
+        List<Long> version = this.sessionRepository.findVersionById(id);
+        if (!version.isEmpty()) {
+            session.setVersion(version.get(0));
+        }
+        checkCapacity(session);
+        Session updated = this.sessionRepository.save(session);
+        // The participant list may have been replaced
+        syncSeatsTaken(id);
+        this.eventPublisher.publishEvent(new SessionEvent(SessionEvent.Type.UPDATED, id, null));
+        return updated;
     }
 
-    public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
-            throw new NotFoundException();
+    // The participant list replaces the current one, it must fit in the capacity
+    private static void checkCapacity(Session session) {
+        int participants = session.getUsers() == null ? 0 : session.getUsers().size();
+        if (session.getCapacity() != null && participants > session.getCapacity()) {
+            throw new BadRequestException();
         }
+    }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(alreadyParticipate) {
+    // A booking committed meanwhile may still overflow the capacity: the whole change is rolled back
+    private void syncSeatsTaken(Long id) {
+        this.sessionRepository.syncSeatsTaken(id);
+        if (this.sessionRepository.countOverbooked(id) > 0) {
             throw new BadRequestException();
         }
-
-        session.getUsers().add(user);
-
-        this.sessionRepository.save(session);
+        this.catalogVersion.incrementAndGet();
     }
 
-    public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        if (session == null) {
-            throw new NotFoundException();
+    /**
+     * Books a seat in one transaction: the seat counter is incremented first, only if the session is
+     * not full, which locks the session row and serializes the bookings of that session only. The
+     * participant row is inserted next and a duplicate enrolment rolls the seat back.
+     */
+    @Transactional
+    public void participate(Long id, Long userId) {
+        if (this.sessionRepository.takeSeat(id) == 0) {
+            if (!this.sessionRepository.existsById(id) || !this.userRepository.existsById(userId)) {
+                throw new NotFoundException();
+            }
+            throw new BadRequestException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
+        int inserted;
+        try {
+            inserted = this.sessionRepository.addParticipant(id, userId);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent enrolment of the same user won the race on the unique key
+            inserted = 0;
+        }
+
+        if (inserted == 0) {
+            if (!this.userRepository.existsById(userId)) {
+                throw new NotFoundException();
+            }
             throw new BadRequestException();
         }
 
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
+        this.catalogVersion.incrementAndGet();
+        this.eventPublisher.publishEvent(new SessionEvent(SessionEvent.Type.PARTICIPATE, id, userId));
+    }
 
-        this.sessionRepository.save(session);
+    @Transactional
+    public void noLongerParticipate(Long id, Long userId) {
+        if (this.sessionRepository.removeParticipant(id, userId) == 0) {
+            if (!this.sessionRepository.existsById(id)) {
+                throw new NotFoundException();
+            }
+            throw new BadRequestException();
+        }
+        this.sessionRepository.releaseSeat(id);
+        this.catalogVersion.incrementAndGet();
+        this.eventPublisher.publishEvent(new SessionEvent(SessionEvent.Type.UNPARTICIPATE, id, userId));
     }
 }
@@ -0,0 +1,43 @@
+package com.openclassrooms.starterjwt.services;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA listener on Teacher, created by Hibernate through Spring, that drops the teacher snapshot on
+ * every write and once more when the transaction completes, so a snapshot reloaded in between
+ * cannot keep uncommitted or rolled back data.
+ */
+public class TeacherCatalogListener {
+
+    @Autowired
+    private ObjectProvider<TeacherService> teacherService;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onWrite(Object teacher) {
+        invalidate();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate();
+                }
+            });
+        }
+    }
+
+    private void invalidate() {
+        if (teacherService != null) {
+            teacherService.ifAvailable(TeacherService::invalidate);
+        }
+    }
+}
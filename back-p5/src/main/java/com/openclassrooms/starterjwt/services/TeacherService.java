@@ -1,24 +1,191 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.TeacherDto;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Serves teachers from an immutable in-memory snapshot of the TEACHERS table. Reads never lock:
+ * the snapshot is replaced as a whole when it gets older than the refresh interval or when a
+ * teacher is written, and callers always receive copies.
+ */
 @Service
 public class TeacherService {
     private final TeacherRepository teacherRepository;
 
+    @Value("${oc.app.teacherCatalogRefreshMs}")
+    private long refreshMs;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    // Bumped by every invalidation, a load that raced with a write does not get published
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
     public TeacherService(TeacherRepository teacherRepository) {
         this.teacherRepository = teacherRepository;
     }
 
     public List<Teacher> findAll() {
-        return this.teacherRepository.findAll();
+        List<Teacher> teachers = new ArrayList<>();
+        for (TeacherDto teacher : getSnapshot().teachers.values()) {
+            teachers.add(toEntity(teacher));
+        }
+        return teachers;
     }
 
     public Teacher findById(Long id) {
-        return this.teacherRepository.findById(id).orElse(null);
+        TeacherDto teacher = findCached(id);
+        return teacher != null ? toEntity(teacher) : null;
+    }
+
+    public List<TeacherDto> findAllDtos() {
+        List<TeacherDto> teachers = new ArrayList<>();
+        for (TeacherDto teacher : getSnapshot().teachers.values()) {
+            teachers.add(copy(teacher));
+        }
+        return teachers;
+    }
+
+    public TeacherDto findDtoById(Long id) {
+        TeacherDto teacher = findCached(id);
+        return teacher != null ? copy(teacher) : null;
+    }
+
+    /**
+     * Strong ETag of the whole catalog, computed once per snapshot.
+     */
+    public String getETag() {
+        return getSnapshot().etag;
+    }
+
+    public String getETag(TeacherDto teacher) {
+        return toETag(teacher.getId() + ":" + teacher.getUpdatedAt());
+    }
+
+    /**
+     * Drops the current snapshot, the next read loads a new one.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        snapshot.set(null);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    private TeacherDto findCached(Long id) {
+        TeacherDto teacher = getSnapshot().teachers.get(id);
+        if (teacher != null) {
+            hits.increment();
+            return teacher;
+        }
+
+        // Read through: a teacher added behind our back makes the snapshot stale
+        misses.increment();
+        teacher = this.teacherRepository.findDtoById(id).orElse(null);
+        if (teacher != null) {
+            invalidate();
+        }
+        return teacher;
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            return load();
+        }
+
+        // Stale: one caller reloads while the others keep reading the previous snapshot
+        if (System.currentTimeMillis() - current.loadedAt >= refreshMs && refreshing.compareAndSet(false, true)) {
+            try {
+                return load();
+            } finally {
+                refreshing.set(false);
+            }
+        }
+        return current;
+    }
+
+    private Snapshot load() {
+        long loadGeneration;
+        synchronized (this) {
+            loadGeneration = generation;
+        }
+
+        Map<Long, TeacherDto> teachers = new LinkedHashMap<>();
+        StringBuilder version = new StringBuilder();
+        for (TeacherDto teacher : this.teacherRepository.findAllDtos()) {
+            teachers.put(teacher.getId(), teacher);
+            version.append(teacher.getId()).append(':').append(teacher.getUpdatedAt()).append(';');
+        }
+
+        Snapshot loaded = new Snapshot(Collections.unmodifiableMap(teachers), toETag(version.toString()),
+                System.currentTimeMillis());
+        synchronized (this) {
+            if (loadGeneration == generation) {
+                snapshot.set(loaded);
+            }
+        }
+        refreshes.increment();
+        return loaded;
+    }
+
+    private static String toETag(String version) {
+        return "\"" + DigestUtils.md5DigestAsHex(version.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private static TeacherDto copy(TeacherDto teacher) {
+        return new TeacherDto(teacher.getId(), teacher.getLastName(), teacher.getFirstName(),
+                teacher.getCreatedAt(), teacher.getUpdatedAt());
+    }
+
+    private static Teacher toEntity(TeacherDto teacher) {
+        return Teacher.builder()
+                .id(teacher.getId())
+                .lastName(teacher.getLastName())
+                .firstName(teacher.getFirstName())
+                .createdAt(teacher.getCreatedAt())
+                .updatedAt(teacher.getUpdatedAt())
+                .build();
+    }
+
+    private static final class Snapshot {
+        private final Map<Long, TeacherDto> teachers;
+        private final String etag;
+        private final long loadedAt;
+
+        private Snapshot(Map<Long, TeacherDto> teachers, String etag, long loadedAt) {
+            this.teachers = teachers;
+            this.etag = etag;
+            this.loadedAt = loadedAt;
+        }
     }
 }
@@ -2,21 +2,40 @@ package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.RefreshTokenService;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.List;
+
 @Service
 public class UserService {
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    private final UserDetailsServiceImpl userDetailsService;
+
+    private final RefreshTokenService refreshTokenService;
+
+    public UserService(UserRepository userRepository,
+                       UserDetailsServiceImpl userDetailsService,
+                       RefreshTokenService refreshTokenService) {
         this.userRepository = userRepository;
+        this.userDetailsService = userDetailsService;
+        this.refreshTokenService = refreshTokenService;
     }
 
     public void delete(Long id) {
         this.userRepository.deleteById(id);
+        this.userDetailsService.evictUser(id);
+        this.refreshTokenService.revokeAll(id);
     }
 
     public User findById(Long id) {
         return this.userRepository.findById(id).orElse(null);
     }
+
+    public List<User> findAllById(Collection<Long> ids) {
+        return this.userRepository.findAllById(ids);
+    }
 }
@@ -1,18 +1,26 @@
 package com.openclassrooms.starterjwt.integration.controllers;
 
+import com.jayway.jsonpath.JsonPath;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 
+import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
 import org.springframework.transaction.annotation.Transactional;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -32,6 +40,9 @@ public class AuthControllerTest {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Value("${oc.app.authRateLimitEmailCapacity}")
+    private int authRateLimitEmailCapacity;
+
 
     /**
      * Vérifie que la connexion de l'utilisateur est un succès 
@@ -66,6 +77,206 @@ public class AuthControllerTest {
     }
 
 
+    /**
+     * Vérifie que le statut administrateur est renvoyé à partir de l'utilisateur chargé pour l'authentification
+     */
+    @Test
+    public void testLoginAdmin_ReturnsAdminFlag() throws Exception {
+
+        String email = "test+" + UUID.randomUUID() + "@test.com";
+
+        userRepository.save(User.builder()
+                .email(email)
+                .firstName("Admin")
+                .lastName("Admin")
+                .password(passwordEncoder.encode("test!1234"))
+                .admin(true)
+                .build());
+
+        mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"" + email + "\",\"password\":\"test!1234\"}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.admin").value(true));
+    }
+
+
+    /**
+     * Vérifie que le mot de passe est recalculé avec le coût courant après une connexion réussie
+     */
+    @Test
+    public void testLoginUser_RehashPasswordWithDifferentCost() throws Exception {
+
+        String email = "test+" + UUID.randomUUID() + "@test.com";
+        String oldHash = new BCryptPasswordEncoder(4).encode("test!1234");
+
+        // Enregistrement d'un utilisateur dont le hash a été calculé avec un coût de 4
+        userRepository.save(User.builder()
+                .email(email)
+                .firstName("Test")
+                .lastName("Test")
+                .password(oldHash)
+                .admin(false)
+                .build());
+
+        mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"" + email + "\",\"password\":\"test!1234\"}"))
+            .andExpect(status().isOk());
+
+        // Le hash enregistré a changé et correspond toujours au mot de passe
+        String newHash = userRepository.findByEmail(email).get().getPassword();
+        assertNotEquals(oldHash, newHash);
+        assertFalse(passwordEncoder.upgradeEncoding(newHash));
+        assertTrue(passwordEncoder.matches("test!1234", newHash));
+    }
+
+
+    /**
+     * Vérifie que le refresh token permet d'obtenir un nouveau token une seule fois
+     */
+    @Test
+    public void testRefreshToken_RotatesToken() throws Exception {
+
+        String email = "test+" + UUID.randomUUID() + "@test.com";
+
+        userRepository.save(User.builder()
+                .email(email)
+                .firstName("Test")
+                .lastName("Test")
+                .password(passwordEncoder.encode("test!1234"))
+                .admin(false)
+                .build());
+
+        // Connexion pour récupérer un refresh token
+        String loginResponse = mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"" + email + "\",\"password\":\"test!1234\"}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.refreshToken").isNotEmpty())
+            .andReturn().getResponse().getContentAsString();
+        String refreshToken = JsonPath.read(loginResponse, "$.refreshToken");
+
+        // Le refresh token donne un nouveau token d'accès et un nouveau refresh token
+        mockMvc.perform(post("/api/auth/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"refreshToken\":\"" + refreshToken + "\"}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.token").isNotEmpty())
+            .andExpect(jsonPath("$.username").value(email))
+            .andExpect(jsonPath("$.refreshToken").value(Matchers.not(refreshToken)));
+
+        // Un refresh token déjà utilisé est refusé
+        mockMvc.perform(post("/api/auth/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"refreshToken\":\"" + refreshToken + "\"}"))
+            .andExpect(status().isUnauthorized());
+    }
+
+
+    /**
+     * Vérifie qu'un token n'est plus accepté après la déconnexion
+     */
+    @Test
+    public void testLogoutUser_RevokesToken() throws Exception {
+
+        String email = "test+" + UUID.randomUUID() + "@test.com";
+        userRepository.save(User.builder()
+                .email(email)
+                .firstName("Test")
+                .lastName("Test")
+                .password(passwordEncoder.encode("test!1234"))
+                .admin(false)
+                .build());
+
+        String loginResponse = mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"" + email + "\",\"password\":\"test!1234\"}"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        String token = JsonPath.read(loginResponse, "$.token");
+        String refreshToken = JsonPath.read(loginResponse, "$.refreshToken");
+
+        // Le token est accepté avant la déconnexion
+        mockMvc.perform(get("/api/teacher").header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/auth/logout")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"refreshToken\":\"" + refreshToken + "\"}"))
+            .andExpect(status().isOk());
+
+        // Le token et le refresh token sont refusés après la déconnexion
+        mockMvc.perform(get("/api/teacher").header("Authorization", "Bearer " + token))
+            .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/api/auth/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"refreshToken\":\"" + refreshToken + "\"}"))
+            .andExpect(status().isUnauthorized());
+    }
+
+    /**
+     * Vérifie que la déconnexion sans token valide est refusée
+     */
+    @Test
+    public void testLogoutUser_WithoutToken() throws Exception {
+        mockMvc.perform(post("/api/auth/logout"))
+            .andExpect(status().isUnauthorized());
+    }
+
+    /**
+     * Vérifie que les tentatives répétées sur un même email sont limitées (429)
+     */
+    @Test
+    public void testLoginUser_TooManyAttempts() throws Exception {
+
+        String email = "test+" + UUID.randomUUID() + "@test.com";
+        String content = "{\"email\":\"" + email + "\",\"password\":\"wrong\"}";
+
+        // Les premières tentatives atteignent le contrôleur, la suivante est rejetée par le filtre
+        for (int i = 0; i < authRateLimitEmailCapacity; i++) {
+            mockMvc.perform(post("/api/auth/login")
+                    .with(remoteAddr("10.0.0." + i))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(content))
+                .andExpect(status().isUnauthorized());
+        }
+
+        mockMvc.perform(post("/api/auth/login")
+                .with(remoteAddr("10.0.1.1"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(content))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().exists("Retry-After"));
+    }
+
+    /**
+     * Vérifie qu'un corps plus grand que la limite est refusé (413) au lieu d'échapper à la limite par email
+     */
+    @Test
+    public void testLoginUser_BodyTooLarge() throws Exception {
+
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 17 * 1024; i++) {
+            padding.append(' ');
+        }
+        String email = "test+" + UUID.randomUUID() + "@test.com";
+
+        mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"" + email + "\",\"password\":\"wrong\"" + padding + "}"))
+            .andExpect(status().isPayloadTooLarge());
+    }
+
+    private static RequestPostProcessor remoteAddr(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+
+
     /**
      * Vérifie que l'inscription de l'utilisateur est un succès
      */
@@ -1,12 +1,18 @@
 package com.openclassrooms.starterjwt.integration.controllers;
 
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 import javax.transaction.Transactional;
 
@@ -17,14 +23,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 
+import com.jayway.jsonpath.JsonPath;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
 
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.SessionEvent;
+import com.openclassrooms.starterjwt.services.SessionSearchIndex;
 
 
 
@@ -40,6 +54,15 @@ public class SessionControllerTest {
 	    @Autowired
 	    private SessionRepository sessionRepository;
 
+	    @Autowired
+	    private TeacherRepository teacherRepository;
+
+	    @Autowired
+	    private UserRepository userRepository;
+
+	    @Autowired
+	    private SessionSearchIndex sessionSearchIndex;
+
 	    private Session session;
 	    private Session session2;
 
@@ -81,6 +104,31 @@ public class SessionControllerTest {
 
 	    }
 	    
+	    /**
+	     * Vérifie que la session récupérée contient l'id du professeur et les ids des participants
+	     **/
+
+	    @Test
+	    public void whenCallGetById_thenReturnTeacherAndParticipantIds() throws Exception {
+
+	        Teacher teacher = teacherRepository.save(Teacher.builder().firstName("Margot").lastName("Delahaye").build());
+	        User user = userRepository.save(User.builder()
+	                .email("participant@test.com")
+	                .firstName("Test")
+	                .lastName("Test")
+	                .password("test!1234")
+	                .admin(false)
+	                .build());
+	        session.setTeacher(teacher);
+	        session.setUsers(new ArrayList<>(Collections.singletonList(user)));
+	        sessionRepository.save(session);
+
+	        mockMvc.perform(get("/api/session/{id}", session.getId()))
+	                .andExpect(MockMvcResultMatchers.status().isOk())
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.teacher_id").value(teacher.getId()))
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.users[0]").value(user.getId()));
+	    }
+
 	    /**
 	     * Vérifie si la récupération de l'ensemble des sessions est réussie
 	     **/
@@ -101,6 +149,214 @@ public class SessionControllerTest {
 	
 	    }
 	    
+	    /**
+	     * Vérifie que la liste non modifiée renvoie 304 et qu'une modification change l'ETag
+	     **/
+
+	    @Test
+	    public void whenListUnchanged_thenReturnNotModified() throws Exception {
+
+	        Teacher teacher = teacherRepository.save(Teacher.builder().firstName("Margot").lastName("Delahaye").build());
+	        session.setTeacher(teacher);
+	        sessionRepository.save(session);
+
+	        String etag = mockMvc.perform(get("/api/session"))
+	                .andExpect(MockMvcResultMatchers.status().isOk())
+	                .andExpect(MockMvcResultMatchers.header().exists("ETag"))
+	                .andReturn().getResponse().getHeader("ETag");
+
+	        // Même version : pas de corps renvoyé
+	        mockMvc.perform(get("/api/session").header("If-None-Match", etag))
+	                .andExpect(MockMvcResultMatchers.status().isNotModified())
+	                .andExpect(MockMvcResultMatchers.content().string(""));
+
+	        // La session est renommée deux fois dans la même seconde : l'ETag change à chaque fois
+	        String sessionEtag = mockMvc.perform(get("/api/session/{id}", session.getId()))
+	                .andReturn().getResponse().getHeader("ETag");
+	        for (String name : new String[] {"Yoga Session renommée", "Yoga Session renommée 2"}) {
+	            mockMvc.perform(put("/api/session/{id}", session.getId())
+	                    .contentType(MediaType.APPLICATION_JSON)
+	                    .content("{\"name\":\"" + name + "\",\"date\":" + session.getDate().getTime()
+	                            + ",\"teacher_id\":" + teacher.getId() + ",\"description\":\"Une session de yoga\",\"users\":[]}"))
+	                    .andExpect(MockMvcResultMatchers.status().isOk());
+
+	            etag = mockMvc.perform(get("/api/session").header("If-None-Match", etag))
+	                    .andExpect(MockMvcResultMatchers.status().isOk())
+	                    .andExpect(MockMvcResultMatchers.header().string("ETag", Matchers.not(etag)))
+	                    .andReturn().getResponse().getHeader("ETag");
+	            sessionEtag = mockMvc.perform(get("/api/session/{id}", session.getId()).header("If-None-Match", sessionEtag))
+	                    .andExpect(MockMvcResultMatchers.status().isOk())
+	                    .andExpect(MockMvcResultMatchers.jsonPath("$.name").value(name))
+	                    .andReturn().getResponse().getHeader("ETag");
+	        }
+	    }
+
+	    /**
+	     * Vérifie que la synchronisation renvoie les sessions modifiées et les sessions supprimées
+	     **/
+
+	    @Test
+	    public void whenCallChanges_thenReturnUpdatedAndDeletedSessions() throws Exception {
+
+	        String since = String.valueOf(System.currentTimeMillis() - 60000);
+	        sessionRepository.save(session);
+	        sessionRepository.save(session2);
+
+	        // La seconde session est supprimée : elle n'est plus renvoyée que comme suppression
+	        mockMvc.perform(delete("/api/session/{id}", session2.getId()))
+	                .andExpect(MockMvcResultMatchers.status().isOk());
+
+	        mockMvc.perform(get("/api/session/changes").param("since", since))
+	                .andExpect(MockMvcResultMatchers.status().isOk())
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.updated[*].id", Matchers.hasItem(session.getId().intValue())))
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.updated[*].id", Matchers.not(Matchers.hasItem(session2.getId().intValue()))))
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.deleted", Matchers.hasItem(session2.getId().intValue())))
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.syncedAt").isNumber());
+	    }
+
+	    /**
+	     * Vérifie qu'un point de synchronisation trop ancien ou invalide est refusé
+	     **/
+
+	    @Test
+	    public void whenCallChangesWithOldOrInvalidSince_thenReturnGoneOrBadRequest() throws Exception {
+	        mockMvc.perform(get("/api/session/changes").param("since", "2000-01-01T00:00:00Z"))
+	                .andExpect(MockMvcResultMatchers.status().isGone());
+	        mockMvc.perform(get("/api/session/changes").param("since", "yesterday"))
+	                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+	    }
+
+	    /**
+	     * Vérifie que la recherche retrouve une session par un début de mot sans accent
+	     **/
+
+	    @Test
+	    public void whenCallSearch_thenReturnMatchingSessions() throws Exception {
+
+	        session.setName("Sophrologie");
+	        session.setDescription("Détente guidée en fin de journée");
+	        sessionRepository.save(session);
+
+	        // Le test ne valide pas sa transaction : l'événement est transmis directement à l'index
+	        for (int i = 0; i < 100 && !sessionSearchIndex.isReady(); i++) {
+	            Thread.sleep(10);
+	        }
+	        sessionSearchIndex.onSessionEvent(new SessionEvent(SessionEvent.Type.CREATED, session.getId(), null));
+
+	        mockMvc.perform(get("/api/session/search").param("q", "DETENTE sophro"))
+	                .andExpect(MockMvcResultMatchers.status().isOk())
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+	                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(session.getId()));
+
+	        sessionRepository.delete(session);
+	        sessionSearchIndex.onSessionEvent(new SessionEvent(SessionEvent.Type.DELETED, session.getId(), null));
+	    }
+
+	    /**
+	     * Vérifie que seules les sessions de l'intervalle [from, to) sont renvoyées
+	     **/
+
+	    @Test
+	    public void whenCallFindAllWithRange_thenReturnSessionsInRange() throws Exception {
+
+	        session.setDate(toDate(LocalDateTime.of(2031, 3, 4, 10, 0)));
+	        session2.setDate(toDate(LocalDateTime.of(2031, 3, 11, 10, 0)));
+	        sessionRepository.save(session);
+	        sessionRepository.save(session2);
+
+	        mockMvc.perform(get("/api/session").param("from", "2031-03-03").param("to", "2031-03-10"))
+	                .andExpect(MockMvcResultMatchers.status().isOk())
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+	                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(session.getId()));
+
+	        // Intervalle inversé, trop long ou incomplet
+	        mockMvc.perform(get("/api/session").param("from", "2031-03-10").param("to", "2031-03-03"))
+	                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+	        mockMvc.perform(get("/api/session").param("from", "2031-01-01").param("to", "2032-01-01"))
+	                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+	        mockMvc.perform(get("/api/session").param("from", "2031-03-03"))
+	                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+	    }
+
+	    /**
+	     * Vérifie que la vue semaine commence le lundi et range les sessions par jour
+	     **/
+
+	    @Test
+	    public void whenCallCalendarWeek_thenReturnSessionsGroupedByDay() throws Exception {
+
+	        session.setDate(toDate(LocalDateTime.of(2031, 3, 5, 18, 30)));
+	        session2.setDate(toDate(LocalDateTime.of(2031, 3, 12, 18, 30)));
+	        sessionRepository.save(session);
+	        sessionRepository.save(session2);
+
+	        // Le 6 mars 2031 est un jeudi : la semaine va du lundi 3 au dimanche 9
+	        mockMvc.perform(get("/api/session/calendar").param("view", "week").param("date", "2031-03-06"))
+	                .andExpect(MockMvcResultMatchers.status().isOk())
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.from").value("2031-03-03"))
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.to").value("2031-03-10"))
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.days.length()").value(7))
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.days['2031-03-05'][0].id").value(session.getId()))
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.days['2031-03-06']").isEmpty());
+
+	        mockMvc.perform(get("/api/session/calendar").param("view", "month").param("date", "2031-03-06"))
+	                .andExpect(MockMvcResultMatchers.status().isOk())
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.days.length()").value(31))
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.days['2031-03-12'][0].id").value(session2.getId()));
+
+	        mockMvc.perform(get("/api/session/calendar").param("view", "year"))
+	                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+	    }
+
+	    private static Date toDate(LocalDateTime dateTime) {
+	        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+	    }
+
+	    /**
+	     * Vérifie que la pagination par curseur parcourt les sessions sans doublon
+	     **/
+
+	    @Test
+	    public void whenCallFindAllWithSize_thenReturnPagesChainedByCursor() throws Exception {
+
+	    	// Deux sessions à la même date : le tri sur l'id les départage
+	        sessionRepository.save(session);
+	        session2.setDate(session.getDate());
+	        sessionRepository.save(session2);
+
+	        String firstPage = mockMvc.perform(get("/api/session").param("size", "1"))
+	                .andExpect(MockMvcResultMatchers.status().isOk())
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.items.length()").value(1))
+	                .andExpect(MockMvcResultMatchers.jsonPath("$.nextCursor").isNotEmpty())
+	                .andReturn().getResponse().getContentAsString();
+
+	        // On suit les curseurs jusqu'à la dernière page
+	        String cursor = JsonPath.read(firstPage, "$.nextCursor");
+	        List<Integer> ids = new ArrayList<>();
+	        ids.add(JsonPath.read(firstPage, "$.items[0].id"));
+	        while (cursor != null) {
+	            String page = mockMvc.perform(get("/api/session").param("size", "1").param("cursor", cursor))
+	                    .andExpect(MockMvcResultMatchers.status().isOk())
+	                    .andReturn().getResponse().getContentAsString();
+	            List<Integer> pageIds = JsonPath.read(page, "$.items[*].id");
+	            ids.addAll(pageIds);
+	            cursor = JsonPath.read(page, "$.nextCursor");
+	        }
+
+	        assertThat(ids).doesNotHaveDuplicates()
+	                .contains(session.getId().intValue(), session2.getId().intValue());
+	    }
+
+	    /**
+	     * Vérifie qu'un curseur invalide est refusé
+	     **/
+
+	    @Test
+	    public void whenInvalidCursorProvided_thenReturnBadRequest() throws Exception {
+	        mockMvc.perform(get("/api/session").param("cursor", "not-a-cursor"))
+	                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+	    }
+
 	    /**
 	     * Vérifie si une session voulant être récupérer est introuvable
 	     **/
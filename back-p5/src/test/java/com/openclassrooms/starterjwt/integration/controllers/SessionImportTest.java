@@ -0,0 +1,182 @@
+package com.openclassrooms.starterjwt.integration.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.services.SessionService;
+
+/**
+ * Pas de @Transactional ici : l'import doit être validé comme en production, les sessions créées sont supprimées ensuite
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@WithMockUser(roles = {"USER"})
+public class SessionImportTest {
+
+    private static final int BENCHMARK_ROWS = 1000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Teacher teacher;
+    private String prefix;
+
+    @BeforeEach
+    public void setUp() {
+        teacher = teacherRepository.save(Teacher.builder().firstName("Margot").lastName("Delahaye").build());
+        prefix = "import-" + UUID.randomUUID().toString().substring(0, 8) + "-";
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        jdbcTemplate.update("delete from SESSIONS where name like ?", prefix + "%");
+        teacherRepository.deleteById(teacher.getId());
+    }
+
+    /**
+     * Vérifie que toutes les lignes valides sont importées
+     */
+    @Test
+    public void whenAllRowsValid_thenSessionsImported() throws Exception {
+
+        mockMvc.perform(post("/api/session/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(rows(3))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(3))
+            .andExpect(jsonPath("$.errors").isEmpty());
+
+        assertThat(countImported()).isEqualTo(3);
+    }
+
+    /**
+     * Vérifie que l'import NDJSON lit une session par ligne
+     */
+    @Test
+    public void whenNdjsonRowsValid_thenSessionsImported() throws Exception {
+
+        StringBuilder body = new StringBuilder();
+        for (SessionDto row : rows(2)) {
+            body.append(objectMapper.writeValueAsString(row)).append('\n');
+        }
+
+        mockMvc.perform(post("/api/session/bulk")
+                .contentType("application/x-ndjson")
+                .content(body.toString()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(2));
+
+        assertThat(countImported()).isEqualTo(2);
+    }
+
+    /**
+     * Vérifie qu'une seule ligne invalide bloque tout l'import et qu'elle est signalée
+     */
+    @Test
+    public void whenOneRowInvalid_thenNothingImportedAndRowReported() throws Exception {
+
+        List<SessionDto> rows = rows(3);
+        rows.get(1).setName("");
+        rows.get(2).setTeacher_id(-1L);
+
+        mockMvc.perform(post("/api/session/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(rows)))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.imported").value(0))
+            .andExpect(jsonPath("$.errors.length()").value(2))
+            .andExpect(jsonPath("$.errors[0].row").value(1))
+            .andExpect(jsonPath("$.errors[1].row").value(2));
+
+        assertThat(countImported()).isZero();
+    }
+
+    /**
+     * Compare le débit de l'import groupé à celui des créations une par une, lancé seulement avec
+     * -Dbenchmark=true : les lignes par seconde sont publiées dans le rapport JUnit
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkBulkImportAgainstSingleCreates(TestReporter testReporter) throws Exception {
+
+        List<SessionDto> rows = rows(BENCHMARK_ROWS);
+
+        long startedAt = System.nanoTime();
+        for (SessionDto row : rows) {
+            sessionService.create(Session.builder()
+                    .name(row.getName())
+                    .date(row.getDate())
+                    .description(row.getDescription())
+                    .teacher(teacher)
+                    .users(new ArrayList<>())
+                    .build());
+        }
+        double singleSeconds = (System.nanoTime() - startedAt) / 1e9;
+
+        startedAt = System.nanoTime();
+        mockMvc.perform(post("/api/session/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(rows)))
+            .andExpect(status().isOk());
+        double bulkSeconds = (System.nanoTime() - startedAt) / 1e9;
+
+        testReporter.publishEntry("single-create-rows-per-second", String.format("%.0f", BENCHMARK_ROWS / singleSeconds));
+        testReporter.publishEntry("bulk-import-rows-per-second", String.format("%.0f", BENCHMARK_ROWS / bulkSeconds));
+        assertThat(countImported()).isEqualTo(2 * BENCHMARK_ROWS);
+    }
+
+    private List<SessionDto> rows(int count) {
+        List<SessionDto> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            SessionDto row = new SessionDto();
+            row.setName(prefix + i);
+            row.setDate(new Date());
+            row.setTeacher_id(teacher.getId());
+            row.setDescription("Session importée");
+            row.setCapacity(20);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private Integer countImported() {
+        return jdbcTemplate.queryForObject("select count(*) from SESSIONS where name like ?", Integer.class, prefix + "%");
+    }
+}
@@ -0,0 +1,98 @@
+package com.openclassrooms.starterjwt.integration.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@Transactional
+@WithMockUser(roles = {"USER"})
+public class SessionQueryCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Vérifie que le nombre de requêtes SQL pour lister les sessions ne dépend pas du nombre de sessions
+     */
+    @Test
+    public void whenListingSessions_thenStatementCountIsConstant() throws Exception {
+        createSessions(3);
+        long fewSessions = countStatements();
+
+        createSessions(30);
+        long manySessions = countStatements();
+
+        // Une requête pour l'ETag, une pour les sessions et une pour les participants
+        assertThat(manySessions).isEqualTo(fewSessions).isLessThanOrEqualTo(3);
+    }
+
+    private long countStatements() throws Exception {
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        mockMvc.perform(get("/api/session"))
+                .andExpect(status().isOk());
+
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void createSessions(int count) {
+        for (int i = 0; i < count; i++) {
+            Teacher teacher = Teacher.builder().firstName("Teacher").lastName("Test" + i).build();
+            entityManager.persist(teacher);
+
+            List<User> users = new ArrayList<>();
+            for (int j = 0; j < 2; j++) {
+                User user = User.builder()
+                        .email("user" + i + "-" + j + "-" + System.nanoTime() + "@test.com")
+                        .firstName("User")
+                        .lastName("Test")
+                        .password("test!1234")
+                        .admin(false)
+                        .build();
+                entityManager.persist(user);
+                users.add(user);
+            }
+
+            entityManager.persist(Session.builder()
+                    .name("Yoga Session " + i)
+                    .date(new Date())
+                    .description("Une session de yoga")
+                    .teacher(teacher)
+                    .users(users)
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.openclassrooms.starterjwt.integration.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.openclassrooms.starterjwt.services.SessionEvent;
+import com.openclassrooms.starterjwt.services.SessionEventBroadcaster;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@WithMockUser(roles = {"USER"})
+public class SessionStreamTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SessionEventBroadcaster sessionEventBroadcaster;
+
+    /**
+     * Vérifie qu'un abonné reçoit les événements publiés sur les sessions
+     */
+    @Test
+    public void whenSessionEventPublished_thenSubscriberReceivesIt() throws Exception {
+
+        MvcResult result = mockMvc.perform(get("/api/session/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        sessionEventBroadcaster.onSessionEvent(new SessionEvent(SessionEvent.Type.PARTICIPATE, 42L, 7L));
+
+        // Les événements sont écrits par le pool d'envoi : on attend leur arrivée
+        String content = "";
+        for (int i = 0; i < 50 && !content.contains("event:participate"); i++) {
+            Thread.sleep(20);
+            content = result.getResponse().getContentAsString();
+        }
+
+        assertThat(content).contains("event:participate");
+        assertThat(content).contains("\"sessionId\":42");
+        assertThat(content).contains("\"userId\":7");
+    }
+
+    /**
+     * Vérifie que plusieurs abonnés reçoivent chacun exactement les mêmes trames
+     */
+    @Test
+    public void whenSeveralSubscribers_thenEachReceivesTheSameFrames() throws Exception {
+
+        MvcResult first = mockMvc.perform(get("/api/session/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult second = mockMvc.perform(get("/api/session/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        sessionEventBroadcaster.onSessionEvent(new SessionEvent(SessionEvent.Type.PARTICIPATE, 42L, 7L));
+        sessionEventBroadcaster.onSessionEvent(new SessionEvent(SessionEvent.Type.UNPARTICIPATE, 42L, 7L));
+
+        String firstContent = "";
+        String secondContent = "";
+        for (int i = 0; i < 50 && !(firstContent.contains("event:unparticipate")
+                && secondContent.contains("event:unparticipate")); i++) {
+            Thread.sleep(20);
+            firstContent = first.getResponse().getContentAsString();
+            secondContent = second.getResponse().getContentAsString();
+        }
+
+        assertThat(firstContent).contains("event:unparticipate");
+        assertThat(secondContent).isEqualTo(firstContent);
+        assertThat(firstContent).doesNotContain("\n\n\n");
+    }
+
+    /**
+     * Vérifie qu'au-delà du nombre maximal d'abonnés la connexion est refusée (503)
+     */
+    @Test
+    public void whenTooManySubscribers_thenReturnServiceUnavailable() throws Exception {
+        Object maxSubscribers = ReflectionTestUtils.getField(sessionEventBroadcaster, "maxSubscribers");
+        ReflectionTestUtils.setField(sessionEventBroadcaster, "maxSubscribers", sessionEventBroadcaster.getSubscriberCount());
+
+        try {
+            mockMvc.perform(get("/api/session/stream"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().exists("Retry-After"));
+        } finally {
+            ReflectionTestUtils.setField(sessionEventBroadcaster, "maxSubscribers", maxSubscribers);
+        }
+    }
+}
@@ -108,4 +108,18 @@ public class TeacherControllerTest {
                 .andExpect(MockMvcResultMatchers.status().isBadRequest());
     }
 
-}
\ No newline at end of file
+    /**
+     * Vérifie que la liste des professeurs non modifiée renvoie 304
+     **/
+
+    @Test
+    public void whenTeachersUnchanged_thenReturnNotModified() throws Exception {
+
+        String etag = mockMvc.perform(get("/api/teacher"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/teacher").header("If-None-Match", etag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+    }
+}
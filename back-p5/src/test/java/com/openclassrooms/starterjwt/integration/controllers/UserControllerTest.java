@@ -6,6 +6,12 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import javax.transaction.Transactional;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+
 import static org.junit.jupiter.api.Assertions.assertFalse;
 
 
@@ -20,7 +26,10 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import com.jayway.jsonpath.JsonPath;
+import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 
 @SpringBootTest
@@ -35,6 +44,9 @@ public class UserControllerTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private SessionRepository sessionRepository;
+
     private User user;
 
     @BeforeEach
@@ -92,6 +104,55 @@ public class UserControllerTest {
                 .andExpect(MockMvcResultMatchers.status().isBadRequest());
     }
     
+    /**
+     * Vérifie que les sessions réservées sont paginées, les prochaines d'abord puis les passées
+     */
+
+    @Test
+    public void whenFindSessions_thenReturnUpcomingThenPastBookings() throws Exception {
+        userRepository.save(user);
+        User other = userRepository.save(User.builder()
+                .email("other@test.com")
+                .lastName("Other")
+                .firstName("Other")
+                .password("test!1234")
+                .admin(false)
+                .build());
+
+        Session past = bookedSession(LocalDateTime.of(2020, 1, 1, 10, 0), user);
+        Session later = bookedSession(LocalDateTime.of(2031, 1, 1, 10, 0), user);
+        Session next = bookedSession(LocalDateTime.of(2030, 1, 1, 10, 0), user);
+        bookedSession(LocalDateTime.of(2030, 6, 1, 10, 0), other);
+
+        String firstPage = mockMvc.perform(get("/api/user/{id}/sessions", user.getId()).param("size", "2"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].id").value(next.getId()))
+                .andExpect(jsonPath("$.items[1].id").value(later.getId()))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+                .andReturn().getResponse().getContentAsString();
+        String cursor = JsonPath.read(firstPage, "$.nextCursor");
+
+        mockMvc.perform(get("/api/user/{id}/sessions", user.getId()).param("size", "2").param("cursor", cursor))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].id").value(past.getId()))
+                .andExpect(jsonPath("$.nextCursor").isEmpty());
+
+        // Les réservations d'un autre utilisateur ne sont pas accessibles
+        mockMvc.perform(get("/api/user/{id}/sessions", other.getId()))
+                .andExpect(MockMvcResultMatchers.status().isUnauthorized());
+    }
+
+    private Session bookedSession(LocalDateTime date, User participant) {
+        return sessionRepository.save(Session.builder()
+                .name("Yoga Session")
+                .date(Date.from(date.atZone(ZoneId.systemDefault()).toInstant()))
+                .description("Une session de yoga")
+                .users(new ArrayList<>(Collections.singletonList(participant)))
+                .build());
+    }
+
     /**
      * Vérifie que la suppression réussit avec un utilisateur existant.
      */
@@ -0,0 +1,95 @@
+package com.openclassrooms.starterjwt.integration.services;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Insertions avec les identifiants AUTO_INCREMENT, PooledIdGenerationBenchmarkTest rejoue les mêmes tests
+ * avec le profil pooled-ids. Pas de @Transactional : les insertions doivent être validées.
+ */
+@SpringBootTest
+public class IdGenerationBenchmarkTest {
+
+    protected static final int BATCH = 100;
+
+    private static final int BENCHMARK_USERS = 2000;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${oc.app.pooledIds}")
+    private boolean pooledIds;
+
+    protected final List<User> users = new ArrayList<>();
+
+    @AfterEach
+    public void cleanUp() {
+        userRepository.deleteAllInBatch(users);
+        users.clear();
+    }
+
+    /**
+     * Vérifie que chaque utilisateur inséré dans un même lot reçoit un identifiant distinct
+     */
+    @Test
+    public void whenSavingManyUsers_thenIdsAreUnique() {
+        saveUsers(BATCH, "ids");
+
+        assertThat(users).allMatch(user -> user.getId() != null);
+        assertThat(users.stream().map(User::getId).distinct().count()).isEqualTo(BATCH);
+    }
+
+    /**
+     * Mesure le débit d'insertion, lancé seulement avec -Dbenchmark=true : la durée est publiée dans le rapport JUnit
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkUserInserts(TestReporter testReporter) {
+        long startedAt = System.nanoTime();
+        saveUsers(BENCHMARK_USERS, "bench");
+        long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000;
+
+        testReporter.publishEntry((pooledIds ? "pooled" : "identity") + "-ids-" + BENCHMARK_USERS + "-inserts-ms",
+                String.valueOf(elapsedMs));
+        assertThat(users.stream().map(User::getId).distinct().count()).isEqualTo(BENCHMARK_USERS);
+    }
+
+    // Les utilisateurs sont validés dans une seule transaction, puis supprimés par cleanUp
+    protected void saveUsers(int count, String prefix) {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        List<User> batch = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            batch.add(newUser(prefix + i + "-" + suffix + "@test.com"));
+        }
+        users.addAll(batch);
+        transactionTemplate.executeWithoutResult(status -> userRepository.saveAll(batch));
+    }
+
+    protected static User newUser(String email) {
+        return User.builder()
+                .email(email)
+                .firstName("Test")
+                .lastName("Test")
+                .password("test!1234")
+                .admin(false)
+                .build();
+    }
+}
@@ -0,0 +1,91 @@
+package com.openclassrooms.starterjwt.integration.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionImportReportDto;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.services.SessionImportService;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Base H2 séparée : le schéma du profil pooled-ids ne doit pas remplacer celui des autres tests
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:pooled;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@ActiveProfiles("pooled-ids")
+public class PooledIdGenerationBenchmarkTest extends IdGenerationBenchmarkTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private SessionImportService sessionImportService;
+
+    /**
+     * Vérifie que les insertions sont envoyées par lots au lieu d'une requête par utilisateur
+     */
+    @Test
+    public void whenSavingManyUsers_thenInsertsAreBatched() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        saveUsers(BATCH, "pooled");
+
+        // Deux lots d'insertions et quelques réservations de blocs d'identifiants
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(10);
+        assertThat(jdbcTemplate.queryForObject(
+                "select next_val from ID_GENERATORS where sequence_name = 'USERS'", Long.class))
+                .isGreaterThanOrEqualTo(users.get(BATCH - 1).getId());
+    }
+
+    /**
+     * Vérifie que l'import de sessions fonctionne avec les identifiants alloués par Hibernate
+     */
+    @Test
+    public void whenImportingSessions_thenIdsComeFromThePool() {
+        Teacher teacher = teacherRepository.save(Teacher.builder().firstName("Margot").lastName("Delahaye").build());
+        String prefix = "pooled-" + UUID.randomUUID().toString().substring(0, 8) + "-";
+        List<SessionDto> rows = new ArrayList<>();
+        for (int i = 0; i < BATCH; i++) {
+            SessionDto row = new SessionDto();
+            row.setName(prefix + i);
+            row.setDate(new Date());
+            row.setTeacher_id(teacher.getId());
+            row.setDescription("Session importée");
+            rows.add(row);
+        }
+
+        try {
+            SessionImportReportDto report = sessionImportService.importSessions(rows);
+
+            assertThat(report.getImported()).isEqualTo(BATCH);
+            assertThat(jdbcTemplate.queryForObject(
+                    "select count(*) from SESSIONS where name like ?", Integer.class, prefix + "%")).isEqualTo(BATCH);
+        } finally {
+            jdbcTemplate.update("delete from SESSIONS where name like ?", prefix + "%");
+            teacherRepository.deleteById(teacher.getId());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.openclassrooms.starterjwt.integration.services;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.RefreshTokenService;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pas de @Transactional ici : chaque consommation doit être validée dans sa propre transaction
+ */
+@SpringBootTest(properties = "oc.app.refreshTokenPersistent=true")
+public class RefreshTokenServiceTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @AfterEach
+    public void cleanUp() {
+        refreshTokenService.revokeAll(user.getId());
+        userRepository.delete(user);
+    }
+
+    /**
+     * Vérifie qu'un refresh token persisté ne peut être consommé qu'une fois, même après un redémarrage
+     * et par des appels simultanés
+     */
+    @Test
+    void whenPersistedTokenConsumedConcurrently_thenRedeemedOnlyOnce() throws InterruptedException {
+        user = userRepository.save(User.builder()
+                .email("refresh-" + UUID.randomUUID().toString().substring(0, 8) + "@test.com")
+                .firstName("Test")
+                .lastName("Test")
+                .password("test!1234")
+                .admin(false)
+                .build());
+        String token = refreshTokenService.issue(UserDetailsImpl.builder()
+                .id(user.getId())
+                .username(user.getEmail())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .admin(false)
+                .build());
+
+        // Simule un redémarrage : seul l'enregistrement en base subsiste
+        ((Map<?, ?>) ReflectionTestUtils.getField(refreshTokenService, "tokens")).clear();
+
+        AtomicInteger redeemed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            executor.submit(() -> {
+                start.await();
+                if (refreshTokenService.consume(token) != null) {
+                    redeemed.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(redeemed.get()).isEqualTo(1);
+    }
+}
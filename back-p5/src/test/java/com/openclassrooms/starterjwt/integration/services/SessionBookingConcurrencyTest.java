@@ -0,0 +1,128 @@
+package com.openclassrooms.starterjwt.integration.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.SessionService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pas de @Transactional ici : chaque réservation doit être validée dans sa propre transaction
+ */
+@SpringBootTest
+public class SessionBookingConcurrencyTest {
+
+    private static final int CAPACITY = 50;
+    private static final int ATTEMPTS = 300;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Session session;
+    private final List<User> users = new ArrayList<>();
+
+    @AfterEach
+    public void cleanUp() {
+        if (session != null) {
+            sessionRepository.deleteById(session.getId());
+        }
+        userRepository.deleteAll(users);
+    }
+
+    /**
+     * Vérifie que des réservations simultanées ne dépassent jamais la capacité de la session, le débit
+     * en réservations par seconde est publié dans le rapport JUnit
+     */
+    @Test
+    void whenManyUsersBookConcurrently_thenSessionIsNeverOverbooked(TestReporter testReporter) throws InterruptedException {
+        session = sessionService.create(Session.builder()
+                .name("Yoga Session")
+                .date(new Date())
+                .description("Une session de yoga très demandée")
+                .capacity(CAPACITY)
+                .users(new ArrayList<>())
+                .build());
+
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        for (int i = 0; i < ATTEMPTS; i++) {
+            users.add(User.builder()
+                    .email("booking" + i + "-" + suffix + "@test.com")
+                    .firstName("Test")
+                    .lastName("Test")
+                    .password("test!1234")
+                    .admin(false)
+                    .build());
+        }
+        userRepository.saveAll(users);
+
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        for (User user : users) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    sessionService.participate(session.getId(), user.getId());
+                    booked.incrementAndGet();
+                } catch (BadRequestException e) {
+                    rejected.incrementAndGet();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                }
+            });
+        }
+
+        // Toutes les réservations partent en même temps, comme à l'ouverture d'un cours
+        long startedAt = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+        double elapsedSeconds = (System.nanoTime() - startedAt) / 1e9;
+
+        testReporter.publishEntry("booking-requests-per-second", String.format("%.0f", ATTEMPTS / elapsedSeconds));
+
+        Integer seatsTaken = jdbcTemplate.queryForObject(
+                "select seats_taken from SESSIONS where id = ?", Integer.class, session.getId());
+        Integer participants = jdbcTemplate.queryForObject(
+                "select count(*) from PARTICIPATE where session_id = ?", Integer.class, session.getId());
+
+        assertThat(failed.get()).isZero();
+        assertThat(booked.get()).isEqualTo(CAPACITY);
+        assertThat(rejected.get()).isEqualTo(ATTEMPTS - CAPACITY);
+        assertThat(seatsTaken).isEqualTo(CAPACITY);
+        assertThat(participants).isEqualTo(CAPACITY);
+    }
+}
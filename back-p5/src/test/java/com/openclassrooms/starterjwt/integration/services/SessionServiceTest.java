@@ -1,5 +1,7 @@
 package com.openclassrooms.starterjwt.integration.services;
 
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
@@ -14,6 +16,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
@@ -22,6 +25,7 @@ import java.util.stream.Collectors;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
@@ -234,6 +238,53 @@ public class SessionServiceTest {
 	    	    .contains(createdUser.getId()));
 
 	}
-	
-	 
+
+	/**
+	 * Teste l'inscription en double, l'inscription à une session inexistante et le désabonnement d'un non-participant.
+	 * Vérifie que les erreurs 400 et 404 sont déduites du nombre de lignes modifiées.
+	 */
+	@Test
+	void testParticipate_AlreadyParticipatingOrUnknownSession() {
+
+	    User createdUser = userRepository.save(user);
+	    Session createdSession = sessionService.create(session);
+	    sessionService.participate(createdSession.getId(), createdUser.getId());
+
+	    assertThrows(BadRequestException.class,
+	            () -> sessionService.participate(createdSession.getId(), createdUser.getId()));
+	    assertThrows(NotFoundException.class,
+	            () -> sessionService.participate(createdSession.getId() + 1000, createdUser.getId()));
+	    assertThrows(BadRequestException.class,
+	            () -> sessionService.noLongerParticipate(createdSession.getId(), createdUser.getId() + 1000));
+	}
+
+	/**
+	 * Teste qu'une modification ne peut pas inscrire plus de participants que la capacité,
+	 * ni baisser la capacité sous le nombre de places prises.
+	 */
+	@Test
+	void testUpdate_ParticipantsAboveCapacity() {
+
+	    User createdUser = userRepository.save(user);
+	    User otherUser = userRepository.save(User.builder()
+	            .email("other@test.com")
+	            .lastName("Test")
+	            .firstName("Test")
+	            .password("test!1234")
+	            .admin(false)
+	            .build());
+	    session.setCapacity(2);
+	    Session createdSession = sessionService.create(session);
+	    sessionService.participate(createdSession.getId(), createdUser.getId());
+	    sessionService.participate(createdSession.getId(), otherUser.getId());
+
+	    Session lowered = Session.builder()
+	            .name(session.getName())
+	            .date(session.getDate())
+	            .description(session.getDescription())
+	            .capacity(1)
+	            .users(new ArrayList<>(Arrays.asList(createdUser, otherUser)))
+	            .build();
+	    assertThrows(BadRequestException.class, () -> sessionService.update(createdSession.getId(), lowered));
+	}
 }
@@ -82,7 +82,30 @@ public class TeacherServiceTest {
 
         // Vérification que le professeur trouvée est celui attendu
 	    assertEquals(teacher.getId(), foundTeacher.getId());
-    }    
-    
-}
+    }
+
+    /**
+     * Vérifie que les lectures sont servies depuis le cache et qu'une écriture le rafraîchit.
+     */
 
+    @Test
+    void testFindTeacherById_ServedFromSnapshot() {
+
+        teacherService.findAll();
+        long refreshes = teacherService.getRefreshes();
+        long hits = teacherService.getHits();
+
+        // Deux lectures successives ne rechargent pas les professeurs
+        teacherService.findById(teacher.getId());
+        teacherService.findById(teacher2.getId());
+        assertEquals(refreshes, teacherService.getRefreshes());
+        assertEquals(hits + 2, teacherService.getHits());
+
+        // Une modification invalide le cache, la lecture suivante voit la nouvelle valeur
+        teacher.setLastName("Renamed");
+        teacherRepository.saveAndFlush(teacher);
+        assertEquals("Renamed", teacherService.findById(teacher.getId()).getLastName());
+        assertEquals(refreshes + 1, teacherService.getRefreshes());
+    }
+
+}
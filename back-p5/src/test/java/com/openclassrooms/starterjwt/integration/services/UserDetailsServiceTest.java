@@ -0,0 +1,76 @@
+package com.openclassrooms.starterjwt.integration.services;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import com.openclassrooms.starterjwt.services.UserService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@Transactional
+public class UserDetailsServiceTest {
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        user = userRepository.save(User.builder()
+                .email("test+" + UUID.randomUUID() + "@test.com")
+                .lastName("Test")
+                .firstName("Test")
+                .password("test!1234")
+                .admin(false)
+                .build());
+    }
+
+    /**
+     * Vérifie que le second chargement d'un utilisateur est servi par le cache
+     */
+    @Test
+    public void whenLoadUserTwice_thenSecondCallIsACacheHit() {
+        long hits = userDetailsService.getCacheHits();
+        long misses = userDetailsService.getCacheMisses();
+
+        UserDetails first = userDetailsService.loadUserByUsername(user.getEmail());
+        UserDetails second = userDetailsService.loadUserByUsername(user.getEmail());
+
+        assertSame(first, second);
+        assertThat(userDetailsService.getCacheMisses()).isEqualTo(misses + 1);
+        assertThat(userDetailsService.getCacheHits()).isEqualTo(hits + 1);
+    }
+
+    /**
+     * Vérifie que la suppression d'un utilisateur invalide son entrée dans le cache
+     */
+    @Test
+    public void whenUserIsDeleted_thenCacheIsInvalidated() {
+        userDetailsService.loadUserByUsername(user.getEmail());
+
+        userService.delete(user.getId());
+
+        assertThrows(UsernameNotFoundException.class,
+                () -> userDetailsService.loadUserByUsername(user.getEmail()));
+    }
+}
@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.unit.mapper;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.UnknownReferenceException;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
@@ -13,12 +14,18 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 
 import java.util.Arrays;
+import java.util.Collections;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest
@@ -119,4 +126,42 @@ public class SessionMapperTest {
         assertTrue(result.getUsers().isEmpty());
     }
 
+    /**
+     * Vérifie que les participants sont chargés en une seule requête, sans doublon
+     */
+    @Test
+    void whenConvertSessionDtoWithUsers_thenLoadUsersOnce() {
+        User user1 = new User();
+        user1.setId(1L);
+        User user2 = new User();
+        user2.setId(2L);
+        when(userService.findAllById(Arrays.asList(2L, 1L))).thenReturn(Arrays.asList(user1, user2));
+
+        SessionDto dto = new SessionDto();
+        dto.setUsers(Arrays.asList(2L, 1L, 2L));
+
+        Session result = sessionMapper.toEntity(dto);
+
+        assertThat(result.getUsers()).containsExactly(user2, user1);
+        verify(userService, times(1)).findAllById(anyCollection());
+        verify(userService, never()).findById(anyLong());
+    }
+
+    /**
+     * Vérifie qu'un id d'utilisateur inconnu est signalé au lieu d'être ignoré
+     */
+    @Test
+    void whenConvertSessionDtoWithUnknownUser_thenThrow() {
+        User user1 = new User();
+        user1.setId(1L);
+        when(userService.findAllById(Arrays.asList(1L, 3L))).thenReturn(Collections.singletonList(user1));
+
+        SessionDto dto = new SessionDto();
+        dto.setUsers(Arrays.asList(1L, 3L));
+
+        UnknownReferenceException exception = assertThrows(UnknownReferenceException.class,
+                () -> sessionMapper.toEntity(dto));
+        assertThat(exception.getMessage()).contains("[3]");
+    }
+
 }
@@ -0,0 +1,42 @@
+package com.openclassrooms.starterjwt.unit.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.security.jwt.AuthEntryPointJwt;
+import com.openclassrooms.starterjwt.security.jwt.TokenFailureLog;
+
+public class AuthEntryPointJwtTest {
+
+    /**
+     * Vérifie que la réponse 401 pré-sérialisée est un JSON valide et compte le rejet
+     */
+    @Test
+    void whenCommence_thenWriteUnauthorizedJsonBody() throws Exception {
+        TokenFailureLog tokenFailureLog = new TokenFailureLog();
+        AuthEntryPointJwt entryPoint = new AuthEntryPointJwt(tokenFailureLog);
+
+        for (String path : new String[] {"/api/session", "/api/user/\"1\""}) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.setServletPath(path);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+
+            entryPoint.commence(request, response, new InsufficientAuthenticationException("Full authentication is required"));
+
+            JsonNode body = new ObjectMapper().readTree(response.getContentAsByteArray());
+            assertThat(response.getStatus()).isEqualTo(401);
+            assertThat(body.get("status").asInt()).isEqualTo(401);
+            assertThat(body.get("error").asText()).isEqualTo("Unauthorized");
+            assertThat(body.get("message").asText()).isEqualTo("Full authentication is required");
+            assertThat(body.get("path").asText()).isEqualTo(path);
+        }
+
+        assertThat(tokenFailureLog.getCount(TokenFailureLog.Reason.UNAUTHORIZED)).isEqualTo(2);
+    }
+}
@@ -0,0 +1,66 @@
+package com.openclassrooms.starterjwt.unit.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.openclassrooms.starterjwt.security.ratelimit.AuthRateLimitFilter;
+import com.openclassrooms.starterjwt.security.ratelimit.TokenBucketRateLimiter;
+
+public class AuthRateLimitFilterTest {
+
+    /**
+     * Vérifie que le corps déjà lu par le filtre peut être relu en mode non bloquant
+     */
+    @Test
+    void whenBodyReadWithReadListener_thenWholeBodyDelivered() throws Exception {
+        AuthRateLimitFilter filter = new AuthRateLimitFilter(
+                new TokenBucketRateLimiter(10, 60, 4, 100, 60000),
+                new TokenBucketRateLimiter(10, 60, 4, 100, 60000));
+        String body = "{\"email\":\"yoga@studio.com\",\"password\":\"test!1234\"}";
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/login");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        AtomicBoolean allDataRead = new AtomicBoolean();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        filter.doFilter(request, new MockHttpServletResponse(), (filteredRequest, response) -> {
+            ServletInputStream in = filteredRequest.getInputStream();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    byte[] buffer = new byte[16];
+                    int count;
+                    while (in.isReady() && !in.isFinished() && (count = in.read(buffer)) != -1) {
+                        read.write(buffer, 0, count);
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    allDataRead.set(true);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    error.set(t);
+                }
+            });
+        });
+
+        assertThat(read.toString("UTF-8")).isEqualTo(body);
+        assertThat(allDataRead).isTrue();
+        assertThat(error.get()).isNull();
+    }
+}
@@ -0,0 +1,106 @@
+package com.openclassrooms.starterjwt.unit.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.security.services.BoundedBCryptPasswordEncoder;
+
+public class BoundedBCryptPasswordEncoderTest {
+
+    private BoundedBCryptPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        encoder.destroy();
+    }
+
+    /**
+     * Vérifie que le hachage et la vérification passent par le pool dédié
+     */
+    @Test
+    void whenEncodeAndMatch_thenHashIsVerified() {
+        encoder = new BoundedBCryptPasswordEncoder(4, 1, 4, 10000, 1);
+
+        String hash = encoder.encode("test!1234");
+
+        assertTrue(encoder.matches("test!1234", hash));
+        assertFalse(encoder.matches("wrong", hash));
+        assertThat(encoder.getHashCount()).isEqualTo(3);
+        assertThat(encoder.getQueueDepth()).isZero();
+    }
+
+    /**
+     * Vérifie qu'un hash fait avec un autre coût est signalé comme à recalculer
+     */
+    @Test
+    void whenStoredCostDiffers_thenUpgradeEncoding() {
+        encoder = new BoundedBCryptPasswordEncoder(5, 1, 4, 10000, 1);
+
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("test!1234")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("test!1234")));
+        assertFalse(encoder.upgradeEncoding(encoder.encode("test!1234")));
+        assertFalse(encoder.upgradeEncoding("not-a-bcrypt-hash"));
+    }
+
+    /**
+     * Vérifie que le coût calibré reste dans les bornes configurées
+     */
+    @Test
+    void whenCalibrate_thenStrengthIsWithinBounds() {
+        encoder = new BoundedBCryptPasswordEncoder(4, 1, 4, 10000, 1);
+
+        assertThat(BoundedBCryptPasswordEncoder.calibrateStrength(1, 4, 6)).isEqualTo(4);
+        assertThat(BoundedBCryptPasswordEncoder.calibrateStrength(100000, 4, 6)).isEqualTo(6);
+    }
+
+    /**
+     * Vérifie que les demandes excédentaires sont rejetées quand le pool et la file sont pleins
+     */
+    @Test
+    void whenPoolIsSaturated_thenRejectWithServiceUnavailable() throws Exception {
+        encoder = new BoundedBCryptPasswordEncoder(10, 1, 1, 10000, 3);
+
+        int callers = 8;
+        ExecutorService callerPool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < callers; i++) {
+            futures.add(callerPool.submit(() -> {
+                start.await();
+                try {
+                    encoder.encode("test!1234");
+                } catch (ServiceUnavailableException e) {
+                    assertThat(e.getRetryAfterSeconds()).isEqualTo(3);
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        callerPool.shutdown();
+
+        assertThat(rejected.get()).isPositive();
+        assertThat(encoder.getRejectedCount()).isEqualTo(rejected.get());
+    }
+}
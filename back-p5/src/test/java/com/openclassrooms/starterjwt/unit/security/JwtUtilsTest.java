@@ -0,0 +1,105 @@
+package com.openclassrooms.starterjwt.unit.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.TokenFailureLog;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+import io.jsonwebtoken.Claims;
+
+public class JwtUtilsTest {
+
+    private JwtUtils jwtUtils;
+
+    private String token;
+
+    @BeforeEach
+    void setup() {
+        jwtUtils = new JwtUtils(new TokenFailureLog());
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "openclassrooms");
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 60000);
+        ReflectionTestUtils.setField(jwtUtils, "jwtCacheSize", 2);
+
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username("yoga@studio.com")
+                .firstName("Admin")
+                .lastName("Admin")
+                .admin(true)
+                .password("secret")
+                .build();
+
+        token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(userDetails, null));
+    }
+
+    /**
+     * Vérifie qu'un token valide est vérifié une seule fois puis servi depuis le cache
+     */
+    @Test
+    void whenTokenIsValid_thenClaimsAreCached() {
+        Claims first = jwtUtils.getVerifiedClaims(token);
+        Claims second = jwtUtils.getVerifiedClaims(token);
+
+        assertThat(first.getSubject()).isEqualTo("yoga@studio.com");
+        assertSame(first, second);
+        assertTrue(jwtUtils.validateJwtToken(token));
+        assertThat(jwtUtils.getUserNameFromJwtToken(token)).isEqualTo("yoga@studio.com");
+    }
+
+    /**
+     * Vérifie que l'identité de l'utilisateur est reconstruite depuis les claims du token
+     */
+    @Test
+    void whenTokenCarriesIdentityClaims_thenBuildUserDetails() {
+        UserDetailsImpl userDetails = jwtUtils.getUserDetailsFromClaims(jwtUtils.getVerifiedClaims(token));
+
+        assertThat(userDetails.getId()).isEqualTo(1L);
+        assertThat(userDetails.getUsername()).isEqualTo("yoga@studio.com");
+        assertThat(userDetails.getFirstName()).isEqualTo("Admin");
+        assertThat(userDetails.getLastName()).isEqualTo("Admin");
+        assertTrue(userDetails.getAdmin());
+    }
+
+    /**
+     * Vérifie qu'un token modifié ou vide est rejeté
+     */
+    @Test
+    void whenTokenIsInvalid_thenReturnNull() {
+        assertNull(jwtUtils.getVerifiedClaims(token + "x"));
+        assertNull(jwtUtils.getVerifiedClaims(""));
+        assertFalse(jwtUtils.validateJwtToken("not-a-token"));
+    }
+
+    /**
+     * Vérifie que le cache reste borné à la taille configurée
+     */
+    @Test
+    void whenCacheIsFull_thenEntriesAreEvicted() {
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 120000);
+        String other = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(
+                UserDetailsImpl.builder().id(2L).username("other@studio.com").build(), null));
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 180000);
+        String third = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(
+                UserDetailsImpl.builder().id(3L).username("third@studio.com").build(), null));
+
+        jwtUtils.getVerifiedClaims(token);
+        jwtUtils.getVerifiedClaims(other);
+        jwtUtils.getVerifiedClaims(third);
+
+        Map<?, ?> cache = (Map<?, ?>) ReflectionTestUtils.getField(jwtUtils, "verifiedClaims");
+        assertThat(cache).hasSizeLessThanOrEqualTo(2);
+        assertThat(jwtUtils.getVerifiedClaims(third).getSubject()).isEqualTo("third@studio.com");
+    }
+}
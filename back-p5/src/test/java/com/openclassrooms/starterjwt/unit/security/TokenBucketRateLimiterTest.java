@@ -0,0 +1,38 @@
+package com.openclassrooms.starterjwt.unit.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.starterjwt.security.ratelimit.TokenBucketRateLimiter;
+
+public class TokenBucketRateLimiterTest {
+
+    /**
+     * Vérifie qu'une clé est limitée une fois son seau vide, sans impacter les autres clés
+     */
+    @Test
+    void whenBucketIsEmpty_thenRejectWithWaitTime() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(2, 60, 4, 100, 60000);
+
+        assertThat(limiter.tryAcquire("127.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire("127.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire("127.0.0.1")).isBetween(1L, 1000L);
+        assertThat(limiter.tryAcquire("10.0.0.1")).isZero();
+    }
+
+    /**
+     * Vérifie que le nombre de seaux conservés reste borné
+     */
+    @Test
+    void whenTooManyKeys_thenEvictOldestBuckets() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(2, 60, 1, 10, 60000);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire("user" + i + "@test.com");
+        }
+
+        assertThat(limiter.size()).isEqualTo(10);
+        assertThat(limiter.getEvictions()).isEqualTo(90);
+    }
+}
@@ -0,0 +1,45 @@
+package com.openclassrooms.starterjwt.unit.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationStore;
+
+public class TokenRevocationStoreTest {
+
+    /**
+     * Vérifie qu'un token révoqué est reconnu, sans impacter les autres tokens
+     */
+    @Test
+    void whenTokenIsRevoked_thenOnlyThisTokenIsDenied() {
+        TokenRevocationStore store = new TokenRevocationStore(1000, 0.01, 60000);
+        String revoked = UUID.randomUUID().toString();
+
+        store.revoke(revoked, System.currentTimeMillis() + 60000);
+
+        assertThat(store.isRevoked(revoked)).isTrue();
+        assertThat(store.isRevoked(UUID.randomUUID().toString())).isFalse();
+        assertThat(store.isRevoked(null)).isFalse();
+    }
+
+    /**
+     * Vérifie que les tokens révoqués sont oubliés une fois expirés
+     */
+    @Test
+    void whenRevokedTokenExpires_thenEntryIsPurged() throws InterruptedException {
+        TokenRevocationStore store = new TokenRevocationStore(1000, 0.01, 0);
+        String shortLived = UUID.randomUUID().toString();
+        String longLived = UUID.randomUUID().toString();
+
+        store.revoke(shortLived, System.currentTimeMillis() + 20);
+        store.revoke(longLived, System.currentTimeMillis() + 60000);
+        Thread.sleep(50);
+
+        assertThat(store.isRevoked(shortLived)).isFalse();
+        assertThat(store.isRevoked(longLived)).isTrue();
+        assertThat(store.size()).isEqualTo(1);
+    }
+}
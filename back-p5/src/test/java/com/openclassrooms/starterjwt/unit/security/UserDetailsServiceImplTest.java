@@ -0,0 +1,66 @@
+package com.openclassrooms.starterjwt.unit.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Constructor;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+
+public class UserDetailsServiceImplTest {
+
+    private static final String EMAIL = "yoga@studio.com";
+
+    private UserRepository userRepository;
+    private UserDetailsServiceImpl userDetailsService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        userRepository = mock(UserRepository.class);
+        Constructor<UserDetailsServiceImpl> constructor = UserDetailsServiceImpl.class.getDeclaredConstructor(UserRepository.class);
+        constructor.setAccessible(true);
+        userDetailsService = constructor.newInstance(userRepository);
+        ReflectionTestUtils.setField(userDetailsService, "userCacheSize", 100);
+        ReflectionTestUtils.setField(userDetailsService, "userCacheTtlMs", 300000L);
+        ReflectionTestUtils.setField(userDetailsService, "principalRevalidationMs", 300000L);
+    }
+
+    /**
+     * Vérifie qu'un chargement lu avant la suppression de l'utilisateur ne remet pas son entrée en cache
+     */
+    @Test
+    void whenUserEvictedDuringLoad_thenLoadedEntryIsNotKept() throws InterruptedException {
+        User user = User.builder().id(1L).email(EMAIL).firstName("Admin").lastName("Admin")
+                .password("test!1234").admin(false).build();
+        CountDownLatch loadRead = new CountDownLatch(1);
+        CountDownLatch evicted = new CountDownLatch(1);
+        when(userRepository.findByEmail(EMAIL)).thenAnswer(invocation -> {
+            // Le chargement a lu l'utilisateur, la suppression passe avant qu'il ne soit mis en cache
+            loadRead.countDown();
+            evicted.await(5, TimeUnit.SECONDS);
+            return Optional.of(user);
+        });
+
+        Thread load = new Thread(() -> userDetailsService.loadUserByUsername(EMAIL));
+        load.start();
+        assertThat(loadRead.await(5, TimeUnit.SECONDS)).isTrue();
+        userDetailsService.evictUser(1L);
+        evicted.countDown();
+        load.join(5000);
+
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.empty());
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername(EMAIL));
+    }
+}
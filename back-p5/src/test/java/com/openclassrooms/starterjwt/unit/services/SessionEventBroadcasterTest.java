@@ -0,0 +1,131 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.services.SessionEvent;
+import com.openclassrooms.starterjwt.services.SessionEventBroadcaster;
+
+public class SessionEventBroadcasterTest {
+
+    private static final int BUFFER_SIZE = 4;
+
+    // Bloque les écritures jusqu'à la fin du test, comme un client qui ne lit plus sa socket
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private SessionEventBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = new SessionEventBroadcaster(new ObjectMapper(), 10, BUFFER_SIZE, 60000, 60000, 2, 5, 100) {
+            @Override
+            protected SseEmitter createEmitter() {
+                return new StalledEmitter(release);
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        broadcaster.destroy();
+    }
+
+    /**
+     * Vérifie qu'un abonné dont le tampon déborde pendant une écriture bloquée ne bloque pas la publication
+     */
+    @Test
+    void whenBufferOverflowsDuringStalledWrite_thenPublisherIsNotBlocked() throws InterruptedException {
+        StalledEmitter emitter = (StalledEmitter) broadcaster.subscribe();
+        broadcaster.onSessionEvent(new SessionEvent(SessionEvent.Type.PARTICIPATE, 42L, 7L));
+        assertThat(emitter.sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            for (int i = 0; i <= BUFFER_SIZE; i++) {
+                broadcaster.onSessionEvent(new SessionEvent(SessionEvent.Type.PARTICIPATE, 42L, 7L));
+            }
+        });
+
+        assertThat(broadcaster.getSubscriberCount()).isZero();
+        assertThat(broadcaster.getDroppedSubscribers()).isEqualTo(1);
+
+        // L'émetteur est terminé par son propre thread d'écriture, une fois l'écriture rendue
+        release.countDown();
+        assertThat(emitter.completed.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    /**
+     * Vérifie que les écritures bloquées sont évincées l'une après l'autre sans bloquer le minuteur
+     */
+    @Test
+    void whenWritesStall_thenEachSubscriberIsEvicted() throws InterruptedException {
+        StalledEmitter first = (StalledEmitter) broadcaster.subscribe();
+        broadcaster.onSessionEvent(new SessionEvent(SessionEvent.Type.PARTICIPATE, 42L, 7L));
+        assertThat(first.sending.await(5, TimeUnit.SECONDS)).isTrue();
+        awaitNoSubscriber();
+
+        StalledEmitter second = (StalledEmitter) broadcaster.subscribe();
+        broadcaster.onSessionEvent(new SessionEvent(SessionEvent.Type.UNPARTICIPATE, 42L, 7L));
+        assertThat(second.sending.await(5, TimeUnit.SECONDS)).isTrue();
+        awaitNoSubscriber();
+
+        assertThat(broadcaster.getDroppedSubscribers()).isEqualTo(2);
+        release.countDown();
+        assertThat(first.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(second.completed.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private void awaitNoSubscriber() throws InterruptedException {
+        for (int i = 0; i < 100 && broadcaster.getSubscriberCount() > 0; i++) {
+            Thread.sleep(20);
+        }
+        assertThat(broadcaster.getSubscriberCount()).isZero();
+    }
+
+    /**
+     * Comme SseEmitter, garde son moniteur pendant toute l'écriture : complete() attend la fin de l'écriture
+     */
+    private static class StalledEmitter extends SseEmitter {
+        private final CountDownLatch release;
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        StalledEmitter(CountDownLatch release) {
+            super(60000L);
+            this.release = release;
+        }
+
+        @Override
+        public synchronized void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public synchronized void complete() {
+            super.complete();
+            completed.countDown();
+        }
+
+        @Override
+        public synchronized void completeWithError(Throwable ex) {
+            super.completeWithError(ex);
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.services.SessionEvent;
+import com.openclassrooms.starterjwt.services.SessionSearchIndex;
+
+public class SessionSearchIndexTest {
+
+    private SessionRepository sessionRepository;
+    private SessionSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        sessionRepository = mock(SessionRepository.class);
+        when(sessionRepository.findAllDtos()).thenReturn(Arrays.asList(
+                session(1L, "Yoga d'été", "Séance en plein air pour débutants"),
+                session(2L, "Méditation", "Respiration et yoga doux"),
+                session(3L, "Pilates", "Renforcement musculaire")));
+        index = new SessionSearchIndex(sessionRepository, 1, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.destroy();
+    }
+
+    /**
+     * Vérifie que la recherche est refusée (503) tant que l'index n'est pas construit
+     */
+    @Test
+    void whenIndexNotBuilt_thenSearchIsUnavailable() {
+        assertThatThrownBy(() -> index.search("yoga", 10)).isInstanceOf(ServiceUnavailableException.class);
+    }
+
+    /**
+     * Vérifie que les accents et la casse sont ignorés et que les mots sont trouvés par leur début
+     */
+    @Test
+    void whenQueryWithoutAccentsOrPrefix_thenSessionsFound() throws InterruptedException {
+        buildIndex();
+
+        assertThat(index.search("ETE", 10)).containsExactly(1L);
+        assertThat(index.search("médit", 10)).containsExactly(2L);
+        assertThat(index.search("debut plein", 10)).containsExactly(1L);
+        assertThat(index.search("yoga pilates", 10)).isEmpty();
+    }
+
+    /**
+     * Vérifie qu'un mot du nom de la session compte plus qu'un mot de sa description
+     */
+    @Test
+    void whenTermInNameAndDescription_thenNameRanksFirst() throws InterruptedException {
+        buildIndex();
+
+        assertThat(index.search("yoga", 10)).containsExactly(1L, 2L);
+        assertThat(index.search("yoga", 1)).containsExactly(1L);
+    }
+
+    /**
+     * Vérifie que l'index suit les créations, modifications et suppressions de sessions
+     */
+    @Test
+    void whenSessionsChange_thenIndexIsUpdated() throws InterruptedException {
+        buildIndex();
+
+        when(sessionRepository.findDtoById(4L)).thenReturn(Optional.of(session(4L, "Stretching", "Étirements")));
+        index.onSessionEvent(new SessionEvent(SessionEvent.Type.CREATED, 4L, null));
+        assertThat(index.search("etirement", 10)).containsExactly(4L);
+
+        when(sessionRepository.findDtoById(3L)).thenReturn(Optional.of(session(3L, "Pilates avancé", "Gainage")));
+        index.onSessionEvent(new SessionEvent(SessionEvent.Type.UPDATED, 3L, null));
+        assertThat(index.search("renforcement", 10)).isEmpty();
+        assertThat(index.search("gainage", 10)).containsExactly(3L);
+
+        when(sessionRepository.findDtoById(1L)).thenReturn(Optional.empty());
+        index.onSessionEvent(new SessionEvent(SessionEvent.Type.DELETED, 1L, null));
+        assertThat(index.search("yoga", 10)).containsExactly(2L);
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    /**
+     * Vérifie qu'une reconstruction en échec est relancée jusqu'à ce que l'index soit prêt
+     */
+    @Test
+    void whenRebuildFails_thenItIsRetried() throws InterruptedException {
+        when(sessionRepository.findAllDtos())
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenReturn(Arrays.asList(session(1L, "Yoga d'été", "Séance en plein air pour débutants")));
+
+        buildIndex();
+
+        assertThat(index.search("yoga", 10)).containsExactly(1L);
+    }
+
+    /**
+     * Vérifie qu'une mise à jour lue avant la suppression de la session ne la remet pas dans l'index
+     */
+    @Test
+    void whenUpdateReadBeforeDelete_thenDeletedSessionStaysOut() throws InterruptedException {
+        buildIndex();
+
+        CountDownLatch updateRead = new CountDownLatch(1);
+        CountDownLatch deleteApplied = new CountDownLatch(1);
+        AtomicInteger reads = new AtomicInteger();
+        when(sessionRepository.findDtoById(3L)).thenAnswer(invocation -> {
+            if (reads.incrementAndGet() > 1) {
+                return Optional.empty();
+            }
+            // La mise à jour a lu l'ancienne session, elle n'est appliquée qu'après la suppression
+            updateRead.countDown();
+            deleteApplied.await(5, TimeUnit.SECONDS);
+            return Optional.of(session(3L, "Pilates", "Renforcement musculaire"));
+        });
+
+        Thread update = new Thread(() -> index.onSessionEvent(new SessionEvent(SessionEvent.Type.UPDATED, 3L, null)));
+        update.start();
+        assertThat(updateRead.await(5, TimeUnit.SECONDS)).isTrue();
+        index.onSessionEvent(new SessionEvent(SessionEvent.Type.DELETED, 3L, null));
+        deleteApplied.countDown();
+        update.join(5000);
+
+        assertThat(index.search("pilates", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    private void buildIndex() throws InterruptedException {
+        index.onApplicationReady();
+        for (int i = 0; i < 100 && !index.isReady(); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(index.isReady()).isTrue();
+    }
+
+    private static SessionDto session(Long id, String name, String description) {
+        return new SessionDto(id, name, new Date(), 1L, description, null, null, null);
+    }
+}
@@ -11,6 +11,9 @@ CREATE TABLE `SESSIONS` (
   `name` VARCHAR(50),
   `description` VARCHAR(2000),
   `date` TIMESTAMP,
+  `capacity` INT,
+  `seats_taken` INT NOT NULL DEFAULT 0,
+  `version` BIGINT NOT NULL DEFAULT 0,
   `teacher_id` int,
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
   `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
@@ -21,20 +24,43 @@ CREATE TABLE `USERS` (
   `last_name` VARCHAR(40),
   `first_name` VARCHAR(40),
   `admin` BOOLEAN NOT NULL DEFAULT false,
-  `email` VARCHAR(255),
+  `email` VARCHAR(255) NOT NULL UNIQUE,
   `password` VARCHAR(255),
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
   `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
 
+CREATE TABLE `REFRESH_TOKENS` (
+  `token_hash` VARCHAR(64) PRIMARY KEY,
+  `user_id` INT NOT NULL,
+  `expires_at` DATETIME NOT NULL
+);
+
+CREATE TABLE `SESSION_TOMBSTONES` (
+  `session_id` INT PRIMARY KEY,
+  `deleted_at` DATETIME NOT NULL
+);
+
+-- Id blocks for the pooled-ids profile, unused with AUTO_INCREMENT
+CREATE TABLE `ID_GENERATORS` (
+  `sequence_name` VARCHAR(255) PRIMARY KEY,
+  `next_val` BIGINT NOT NULL
+);
+
 CREATE TABLE `PARTICIPATE` (
-  `user_id` INT, 
-  `session_id` INT
+  `user_id` INT NOT NULL,
+  `session_id` INT NOT NULL,
+  PRIMARY KEY (`session_id`, `user_id`)
 );
 
 ALTER TABLE `SESSIONS` ADD FOREIGN KEY (`teacher_id`) REFERENCES `TEACHERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
+CREATE INDEX `idx_sessions_date_id` ON `SESSIONS` (`date`, `id`);
+CREATE INDEX `idx_sessions_updated_at` ON `SESSIONS` (`updated_at`);
+CREATE INDEX `idx_participate_user_session` ON `PARTICIPATE` (`user_id`, `session_id`);
+CREATE INDEX `idx_session_tombstones_deleted_at` ON `SESSION_TOMBSTONES` (`deleted_at`);
+ALTER TABLE `REFRESH_TOKENS` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`) ON DELETE CASCADE;
 
 INSERT INTO TEACHERS (first_name, last_name)
 VALUES ('Margot', 'DELAHAYE'),
@@ -44,3 +70,8 @@ VALUES ('Margot', 'DELAHAYE'),
 INSERT INTO USERS (first_name, last_name, admin, email, password)
 VALUES ('Admin', 'Admin', true, 'yoga@studio.com', '$2a$10$.Hsa/ZjUVaHqi0tp9xieMeewrnZxrZ5pQRzddUXE/WjDu2ZThe6Iq'); 
 
+-- Pooled blocks start after the existing rows (allocation size 50)
+INSERT INTO ID_GENERATORS (sequence_name, next_val)
+SELECT 'TEACHERS', COALESCE(MAX(id), 0) + 50 FROM TEACHERS
+UNION ALL SELECT 'SESSIONS', COALESCE(MAX(id), 0) + 50 FROM SESSIONS
+UNION ALL SELECT 'USERS', COALESCE(MAX(id), 0) + 50 FROM USERS;